@@ -24,25 +24,56 @@
 package net.sf.authorship;
 
 import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.sf.authorship.model.Aliases;
 import net.sf.authorship.model.Author;
+import net.sf.authorship.model.AuthorshipModel;
+import net.sf.authorship.model.AuthorshipModel.Source;
+import net.sf.authorship.model.Ownership;
+import net.sf.authorship.model.PathIndex;
+import net.sf.authorship.strategies.AuthorBuffer;
 import net.sf.authorship.strategies.AuthorshipStrategy;
+import net.sf.authorship.strategies.GitBlameStrategy;
+import net.sf.authorship.strategies.GitMirrorCache;
+import net.sf.authorship.strategies.GitOptions;
+import net.sf.authorship.strategies.GitPathIndexStrategy;
 import net.sf.authorship.strategies.GitStrategy;
-import net.sf.authorship.strategies.JavaSourceStrategy;
+import net.sf.authorship.strategies.SourceStrategy;
+import net.sf.authorship.strategies.StreamingAuthorshipStrategy;
+import net.sf.authorship.strategies.SvnPathIndexStrategy;
 import net.sf.authorship.strategies.SvnOptions;
+import net.sf.authorship.strategies.SvnSessionPool;
 import net.sf.authorship.strategies.SvnStrategy;
 import net.sf.authorship.strategies.SvnStrategy.PROTOCOL;
+import net.sf.authorship.util.AuthorUtil;
 import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.Workspace;
 
-import org.apache.commons.validator.routines.EmailValidator;
+import org.apache.commons.lang.StringUtils;
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Developer;
 import org.apache.maven.model.Scm;
 import org.apache.maven.project.MavenProject;
@@ -53,6 +84,7 @@ import org.apache.maven.scm.manager.ScmManager;
 import org.apache.maven.scm.provider.ScmProvider;
 import org.apache.maven.scm.repository.ScmRepositoryException;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 /**
  * Process authors from SCM, Java Sources and pom.xml and 
@@ -71,6 +103,24 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
      */
     private MavenProject project;
 
+    /**
+     * The projects of the reactor, to release shared resources after the 
+     * last one.
+     * 
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The Maven session, whose modules share the SCM scans in aggregate mode.
+     * 
+     * @parameter expression="${session}"
+     * @readonly
+     */
+    private MavenSession session;
+
     /**
      * SCM Manager component to be injected.
      * 
@@ -95,25 +145,304 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
      */
     private File outputDirectory;
 
+    /**
+     * Directory where authors found in previous builds are kept, so that 
+     * later builds only analyse what changed.
+     * 
+     * @parameter expression="${authorship.cacheDirectory}" default-value="${project.build.directory}/authorship"
+     */
+    private File cacheDirectory;
+
+    /**
+     * Directory holding local mirrors of Git repositories. Mirrors are 
+     * cloned once and updated with incremental fetches on later builds.
+     * 
+     * @parameter expression="${authorship.gitMirrorDirectory}" default-value="${user.home}/.m2/authorship/git"
+     */
+    private File gitMirrorDirectory;
+
+    /**
+     * Whether Git repositories are mirrored into <i>gitMirrorDirectory</i>. 
+     * When <code>false</code>, the repository is cloned into a temporary 
+     * folder of the workspace directory, and deleted after use.
+     * 
+     * @parameter expression="${authorship.gitUseMirror}" default-value="true"
+     */
+    private boolean gitUseMirror;
+
+    /**
+     * Read Git authorship from the repository enclosing the project base 
+     * directory, when there is one with the whole history. The SCM 
+     * connection is only used as a fallback.
+     * 
+     * @parameter expression="${authorship.gitUseLocalRepository}" default-value="true"
+     */
+    private boolean gitUseLocalRepository;
+
+    /**
+     * Fetch only what is needed to walk the Git commits: no working tree, 
+     * and only the analysed branch when cloning into a temporary folder.
+     * 
+     * @parameter expression="${authorship.gitMetadataOnly}" default-value="true"
+     */
+    private boolean gitMetadataOnly;
+
+    /**
+     * Only Git commits made on or after this date (<i>yyyy-MM-dd</i>) are 
+     * analysed.
+     * 
+     * @parameter expression="${authorship.gitSince}"
+     */
+    private String gitSince;
+
+    /**
+     * Number of threads blaming files, <code>0</code> for one per available 
+     * processor.
+     * 
+     * @parameter expression="${authorship.gitThreads}" default-value="0"
+     */
+    private int gitThreads;
+
+    /**
+     * Number of threads reading Git commits when the whole history is 
+     * analysed. More than one thread only helps on histories with many 
+     * branches, a linear history is read faster by a single walk, which also 
+     * streams the authors as they are found.
+     * 
+     * @parameter expression="${authorship.gitScanThreads}" default-value="1"
+     */
+    private int gitScanThreads;
+
+    /**
+     * Blame the files of the Git repository, and report how many surviving 
+     * lines each author owns in the project.
+     * 
+     * @parameter expression="${authorship.gitBlame}" default-value="false"
+     */
+    private boolean gitBlame;
+
+    /**
+     * Keep an index of the authors who changed each directory of the Git 
+     * repository, and report the authors of the module directory.
+     * 
+     * @parameter expression="${authorship.gitPathIndex}" default-value="false"
+     */
+    private boolean gitPathIndex;
+
+    /**
+     * Whether the SCM repository is scanned once for the whole reactor, and 
+     * each module reports the authors of the commits that changed files 
+     * under its base directory. It also reports the module authors, as 
+     * <i>gitPathIndex</i> does, for Git and SVN.
+     * 
+     * @parameter expression="${authorship.aggregate}" default-value="false"
+     */
+    private boolean aggregate;
+
+    /**
+     * Maximum number of Git commits analysed, <code>0</code> for no limit.
+     * 
+     * @parameter expression="${authorship.gitMaxCount}" default-value="0"
+     */
+    private int gitMaxCount;
+
+    /**
+     * Read the Subversion log without the paths changed by each revision, 
+     * which are not needed to find the authors.
+     * 
+     * @parameter expression="${authorship.svnLean}" default-value="true"
+     */
+    private boolean svnLean;
+
+    /**
+     * Number of concurrent sessions reading the Subversion log in lean mode, 
+     * each one over a chunk of revisions.
+     * 
+     * @parameter expression="${authorship.svnThreads}" default-value="4"
+     */
+    private int svnThreads;
+
+    /**
+     * Number of revisions read by each concurrent Subversion log request.
+     * 
+     * @parameter expression="${authorship.svnChunkSize}" default-value="10000"
+     */
+    private long svnChunkSize;
+
+    /**
+     * Maximum number of SVN log entries read, <code>0</code> for no limit. 
+     * A limit smaller than the revision range disables the concurrent log 
+     * and the author cache.
+     * 
+     * @parameter expression="${authorship.svnLimit}" default-value="0"
+     */
+    private long svnLimit;
+
+    /**
+     * Directory where Subversion authors and the last revision read are kept, 
+     * shared by the modules and builds of the same user. Later builds only 
+     * read the new revisions. When empty, the whole log is always read.
+     * 
+     * @parameter expression="${authorship.svnCacheDirectory}" default-value="${user.home}/.m2/authorship/svn"
+     */
+    private File svnCacheDirectory;
+
+    /**
+     * Number of threads reading the sources, <code>0</code> for one per 
+     * available processor.
+     * 
+     * @parameter expression="${authorship.sourceThreads}" default-value="0"
+     */
+    private int sourceThreads;
+
+    /**
+     * Extra source roots searched for authors, besides the compile and test 
+     * source roots of the project, e.g. generated or resources directories.
+     * 
+     * @parameter
+     */
+    private File[] sourceRoots;
+
+    /**
+     * Comma separated extensions of the source files searched for authors. 
+     * Supported extensions are <i>java</i>, <i>groovy</i>, <i>scala</i>, 
+     * <i>kt</i> and <i>js</i>, for Javadoc style <i>@author</i> tags, and 
+     * <i>xml</i>, for <i>&lt;author&gt;</i> elements and <i>@author</i> 
+     * tags in comments.
+     * 
+     * @parameter expression="${authorship.sourceExtensions}" default-value="java"
+     */
+    private String sourceExtensions;
+
+    /**
+     * Encoding of the sources.
+     * 
+     * @parameter expression="${authorship.sourceEncoding}" default-value="${project.build.sourceEncoding}"
+     */
+    private String sourceEncoding;
+
+    /**
+     * Whether the whole sources are searched for authors. 
+     * By default only the header, up to the first type declaration, is read.
+     * 
+     * @parameter expression="${authorship.sourceFullScan}" default-value="false"
+     */
+    private boolean sourceFullScan;
+
+    /**
+     * Whether the sources cached in the cache directory are compared by 
+     * content hash when their size or modification time changed, so that 
+     * touched but unchanged sources are not read again.
+     * 
+     * @parameter expression="${authorship.sourceContentHash}" default-value="false"
+     */
+    private boolean sourceContentHash;
+
+    /**
+     * Git mailmap file, mapping commit names and e-mails to the proper ones. 
+     * Ignored when missing.
+     * 
+     * @parameter expression="${authorship.mailmapFile}" default-value="${basedir}/.mailmap"
+     */
+    private File mailmapFile;
+
+    /**
+     * File listing the aliases of each person, one person per line, the 
+     * aliases separated by <i>=</i> or <i>,</i>, e.g. 
+     * <i>jdoe = John Doe &lt;jdoe@corp&gt;, J. Doe</i>.
+     * 
+     * @parameter expression="${authorship.aliasFile}"
+     */
+    private File aliasFile;
+
+    /**
+     * Whether authors with similar names and logins, such as <i>John Doe</i>, 
+     * <i>J. Doe</i> and <i>jdoe</i>, are reported as the same person.
+     * 
+     * @parameter expression="${authorship.fuzzyMatching}" default-value="false"
+     */
+    private boolean fuzzyMatching;
+
+    /**
+     * Number of threads collecting authors from pom.xml, SCM and source files, 
+     * <code>0</code> for one per collector.
+     * 
+     * @parameter expression="${authorship.collectorThreads}" default-value="0"
+     */
+    private int collectorThreads;
+
+    /**
+     * Time, in seconds, each collector (pom.xml, SCM, source files, line 
+     * ownership and module authors) may run, <code>0</code> for no limit. 
+     * The authors found by the SCM and source files collectors until then 
+     * are still reported.
+     * 
+     * @parameter expression="${authorship.collectorTimeout}" default-value="0"
+     */
+    private long collectorTimeout;
+
+    /**
+     * Scratch directory for temporary clones. Clones are deleted after use, 
+     * and the ones left by interrupted builds are deleted by later builds.
+     * 
+     * @parameter expression="${authorship.workspaceDirectory}" default-value="${java.io.tmpdir}/authorship"
+     */
+    private File workspaceDirectory;
+
+    /**
+     * Size budget, in megabytes, of the scratch directory. The least recently 
+     * used entries are deleted when it is exceeded, <code>0</code> for no 
+     * limit.
+     * 
+     * @parameter expression="${authorship.workspaceMaxSize}" default-value="2048"
+     */
+    private long workspaceMaxSize;
+
+    /**
+     * Size budget, in megabytes, of the Git mirror directory. The least 
+     * recently used mirrors are deleted when it is exceeded, <code>0</code> 
+     * for no limit. Mirrors are meant to outlive builds, so there is no 
+     * limit by default.
+     * 
+     * @parameter expression="${authorship.gitMirrorMaxSize}" default-value="0"
+     */
+    private long gitMirrorMaxSize;
+
+    private Workspace workspace;
+    private GitMirrorCache gitMirrorCache;
+    private boolean collectorsStopped = true;
+
+    /**
+     * Collectors run by the report: pom.xml, SCM, source files, line 
+     * ownership and module authors.
+     */
+    private final static int COLLECTORS = 5;
+    private final static long COLLECTOR_GRACE_SECONDS = 5L;
     private final static String SCM_PROVIDER_SVN_TYPE = "svn";
     private final static String GIT_PROVIDER_SVN_TYPE = "git";
+    private final static String GIT_SINCE_FORMAT = "yyyy-MM-dd";
+    private final static String GIT_CACHE_FILE = "git-authors.properties";
+    private final static String GIT_BLAME_CACHE_FILE = "git-blame.bin";
+    private final static String GIT_PATH_INDEX_FILE = "git-path-index.bin";
 
 //    public void execute() throws MojoExecutionException {
 //        getLog().info("pom.xml authors: " + this.getPomAuthors());
-//        getLog().info("SCM authors: " + this.getScmAuthors());
-//        getLog().info("Java source authors: " + this.getJavaSourceAuthors());
 //    }
     
     /**
-     * @return list of authors from SCM.
+     * Reads the authors from SCM.
+     * 
+     * @param authors receives the authors from SCM, as they are found
      */
-    private Set<Author> getScmAuthors() {
-        Set<Author> authors = new LinkedHashSet<Author>();
+    @SuppressWarnings("unchecked")
+    private void getScmAuthors(AuthorBuffer<Author> authors) {
         final Scm scm = project.getScm();
         if(scm != null) {
             final String connection = project.getScm().getConnection();
             if(connection == null) {
               getLog().info("Empty <connection> in pom.xml SCM information (<scm> XML tag).");  
+            } else if(aggregate) {
+                this.getAggregateAuthors(authors);
             } else {
                 ScmProvider scmProvider;
                 try {
@@ -122,15 +451,34 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
                     if(SCM_PROVIDER_SVN_TYPE.equals(scmProvider.getScmType())) {
                         final String svnUrl = this.getSvnUrl(connection);
                         final PROTOCOL protocol = this.geSvnProtocol(connection);
-                        final SvnOptions options = new SvnOptions(); // TODO: map from mojo config
-                        strategy = new SvnStrategy(protocol, svnUrl, options); // FIXME 
+                        final SvnOptions options = this.getSvnOptions();
+                        final SvnStrategy svnStrategy = new SvnStrategy(protocol, svnUrl, options); // FIXME 
+                        svnStrategy.setCacheDirectory(svnCacheDirectory);
+                        strategy = svnStrategy;
                     } else if(GIT_PROVIDER_SVN_TYPE.equals(scmProvider.getScmType())) {
-                        final String folder = new File(System.getProperty("java.io.tmpdir"), Long.toString(System.nanoTime())).getAbsolutePath();
                         // FIXME: avoid exceptions with index out of bound
-                        strategy = new GitStrategy(connection.substring(connection.indexOf("scm:git:")+8, connection.length()), folder, Constants.HEAD, null);
+                        final String gitUrl = connection.substring(connection.indexOf("scm:git:")+8, connection.length());
+                        final GitOptions options = this.getGitOptions();
+                        final GitStrategy gitStrategy;
+                        if(this.isGitMirrorUsed()) {
+                            gitStrategy = new GitStrategy(gitUrl, this.getGitMirrorCache(), Constants.HEAD, null, options);
+                        } else {
+                            gitStrategy = new GitStrategy(gitUrl, this.getWorkspace(), Constants.HEAD, null, options);
+                        }
+                        if(gitUseLocalRepository) {
+                            gitStrategy.setLocalDirectory(project.getBasedir());
+                        }
+                        if(cacheDirectory != null) {
+                            gitStrategy.setCacheFile(new File(cacheDirectory, GIT_CACHE_FILE));
+                        }
+                        strategy = gitStrategy;
                     }
-                    if(strategy != null) {
-                        authors = strategy.getAuthors();
+                    if(strategy instanceof StreamingAuthorshipStrategy) {
+                        ((StreamingAuthorshipStrategy<Author>) strategy).readAuthors(authors);
+                    } else if(strategy != null) {
+                        for(Author author : strategy.getAuthors()) {
+                            authors.handleAuthor(author);
+                        }
                     }
                 } catch (ScmRepositoryException e) {
                     getLog().warn("Failed to retrieve authorship from <scm>: " + e.getMessage(), e);
@@ -143,16 +491,319 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
         } else {
             getLog().info("No project SCM information found. Skipping authorship from SCM (<scm> XML tag info).");
         }
-        return authors;
     }
     
+    /**
+     * @return lines owned by each author, or <code>null</code> if blame is 
+     * disabled or the project is not in a Git repository.
+     */
+    private Ownership getScmOwnership() {
+        if(!gitBlame) {
+            return null;
+        }
+        final Scm scm = project.getScm();
+        final String connection = scm != null ? scm.getConnection() : null;
+        if(connection == null || connection.indexOf("scm:git:") < 0) {
+            getLog().info("Blame is only available for Git repositories. Skipping line ownership.");
+            return null;
+        }
+        final String gitUrl = connection.substring(connection.indexOf("scm:git:")+8, connection.length());
+        final GitBlameStrategy strategy;
+        if(this.isGitMirrorUsed()) {
+            strategy = new GitBlameStrategy(gitUrl, this.getGitMirrorCache(), Constants.HEAD, this.getGitOptions());
+        } else {
+            strategy = new GitBlameStrategy(gitUrl, this.getWorkspace(), Constants.HEAD, this.getGitOptions());
+        }
+        if(gitUseLocalRepository) {
+            strategy.setLocalDirectory(project.getBasedir());
+        }
+        // the module directory is the same in the working tree and in the 
+        // mirror or clone
+        strategy.setPathPrefix(this.getGitPathPrefix());
+        if(cacheDirectory != null) {
+            strategy.setBlameCacheFile(new File(cacheDirectory, GIT_BLAME_CACHE_FILE));
+        }
+        try {
+            strategy.getAuthors();
+            return strategy.getOwnership();
+        } catch (AuthorshipException ae) {
+            getLog().warn("Failed to retrieve line ownership from <scm>: " + ae.getMessage(), ae);
+            return null;
+        }
+    }
+
+    /**
+     * @return commits per author that changed the module directory, or 
+     * <code>null</code> if the path index is disabled or the project is not in 
+     * a Git repository.
+     */
+    private Map<Author, Integer> getScmModuleAuthors() {
+        if(aggregate) {
+            try {
+                return this.getAggregateModuleAuthors();
+            } catch (AuthorshipException ae) {
+                getLog().warn("Failed to retrieve module authors from <scm>: " + ae.getMessage(), ae);
+                return null;
+            }
+        }
+        if(!gitPathIndex) {
+            return null;
+        }
+        final Scm scm = project.getScm();
+        final String connection = scm != null ? scm.getConnection() : null;
+        if(connection == null || connection.indexOf("scm:git:") < 0) {
+            getLog().info("Path index is only available for Git repositories. Skipping module authors.");
+            return null;
+        }
+        final String gitUrl = connection.substring(connection.indexOf("scm:git:")+8, connection.length());
+        try {
+            return this.getGitPathIndex(gitUrl).getAuthors(this.getGitPathPrefix());
+        } catch (AuthorshipException ae) {
+            getLog().warn("Failed to retrieve module authors from <scm>: " + ae.getMessage(), ae);
+            return null;
+        }
+    }
+
+    /**
+     * @param gitUrl Git repository URL
+     * @return the index of the directories changed by each author
+     */
+    private PathIndex getGitPathIndex(String gitUrl) throws AuthorshipException {
+        final GitPathIndexStrategy strategy;
+        if(this.isGitMirrorUsed()) {
+            strategy = new GitPathIndexStrategy(gitUrl, this.getGitMirrorCache(), Constants.HEAD, this.getGitOptions());
+        } else {
+            strategy = new GitPathIndexStrategy(gitUrl, this.getWorkspace(), Constants.HEAD, this.getGitOptions());
+        }
+        if(gitUseLocalRepository) {
+            strategy.setLocalDirectory(project.getBasedir());
+        }
+        if(cacheDirectory != null) {
+            strategy.setIndexFile(new File(cacheDirectory, GIT_PATH_INDEX_FILE));
+        }
+        strategy.getAuthors();
+        return strategy.getIndex();
+    }
+
+    /**
+     * Reads the SCM authors of the module from the scan of the repository 
+     * shared by the reactor.
+     * 
+     * @param authors receives the authors of the commits that changed files 
+     * under the module base directory
+     */
+    private void getAggregateAuthors(AuthorBuffer<Author> authors) {
+        try {
+            final Map<Author, Integer> moduleAuthors = this.getAggregateModuleAuthors();
+            if(moduleAuthors == null) {
+                getLog().info("Aggregate mode is only available for Git and SVN repositories. Skipping authorship from SCM.");
+                return;
+            }
+            for(Author author : moduleAuthors.keySet()) {
+                if(!authors.handleAuthor(author)) {
+                    return;
+                }
+            }
+        } catch (AuthorshipException ae) {
+            getLog().warn("Failed to retrieve authorship from <scm>: " + ae.getMessage(), ae);
+        }
+    }
+
+    /**
+     * Finds the module slice of the repository scanned once per Maven 
+     * session. Git paths are matched against the module base directory 
+     * relative to the working tree. SVN paths are matched against the module 
+     * base directory relative to the execution root project, whose SVN url 
+     * is the one scanned.
+     * 
+     * @return commits per author that changed files under the module base 
+     * directory, or <code>null</code> if the SCM is neither Git nor SVN
+     */
+    private Map<Author, Integer> getAggregateModuleAuthors() throws AuthorshipException {
+        final Scm scm = project.getScm();
+        final String connection = scm != null ? scm.getConnection() : null;
+        if(connection == null) {
+            return null;
+        }
+        final SessionScmCache cache = SessionScmCache.get(session != null ? session : project);
+        if(connection.indexOf("scm:git:") >= 0) {
+            final String gitUrl = connection.substring(connection.indexOf("scm:git:")+8, connection.length());
+            final PathIndex index = cache.getIndex(GIT_PROVIDER_SVN_TYPE + ":" + gitUrl, new Callable<PathIndex>() {
+                public PathIndex call() throws AuthorshipException {
+                    return getGitPathIndex(gitUrl);
+                }
+            });
+            return index.getAuthors(this.getGitPathPrefix());
+        } else if(connection.indexOf("scm:svn:") >= 0) {
+            final MavenProject root = this.getExecutionRootProject();
+            final String svnConnection = root.getScm().getConnection();
+            final String svnUrl = this.getSvnUrl(svnConnection);
+            final PROTOCOL protocol = this.geSvnProtocol(svnConnection);
+            final PathIndex index = cache.getIndex(SCM_PROVIDER_SVN_TYPE + ":" + svnUrl, new Callable<PathIndex>() {
+                public PathIndex call() throws AuthorshipException {
+                    final SvnPathIndexStrategy strategy = new SvnPathIndexStrategy(protocol, svnUrl, getSvnOptions());
+                    strategy.setCacheDirectory(svnCacheDirectory);
+                    strategy.getAuthors();
+                    return strategy.getIndex();
+                }
+            });
+            // the root project contains this project, or is this project
+            final String basedir = project.getBasedir().getAbsolutePath();
+            final String rootdir = root.getBasedir().getAbsolutePath();
+            return index.getAuthors(StringUtils.removeStart(
+                basedir.substring(rootdir.length()).replace(File.separatorChar, '/'), "/"));
+        }
+        return null;
+    }
+
+    /**
+     * @return the reactor project at the execution root directory, when it 
+     * has a SVN connection and contains this project, or this project
+     */
+    private MavenProject getExecutionRootProject() {
+        if(session == null || reactorProjects == null || session.getExecutionRootDirectory() == null) {
+            return project;
+        }
+        final File root = new File(session.getExecutionRootDirectory()).getAbsoluteFile();
+        final String basedir = project.getBasedir().getAbsolutePath();
+        for(MavenProject reactorProject : reactorProjects) {
+            final File reactorBasedir = reactorProject.getBasedir();
+            final Scm scm = reactorProject.getScm();
+            if(reactorBasedir != null && root.equals(reactorBasedir.getAbsoluteFile()) 
+                    && scm != null && scm.getConnection() != null && scm.getConnection().indexOf("scm:svn:") >= 0
+                    && (basedir.equals(root.getPath()) || basedir.startsWith(root.getPath() + File.separator))) {
+                return reactorProject;
+            }
+        }
+        return project;
+    }
+
+    /**
+     * Counts this module as reported, and releases the resources shared by 
+     * the modules of the reactor after the last one. The SVN sessions are 
+     * left to the shutdown hook of the pool if collectors of any module may 
+     * still use them.
+     */
+    private void finishModule() {
+        final Object key = session != null ? session : project;
+        final int modules = reactorProjects == null || reactorProjects.isEmpty() ? 1 : reactorProjects.size();
+        final SessionScmCache cache = SessionScmCache.get(key);
+        if(cache.finish(modules, collectorsStopped)) {
+            SessionScmCache.remove(key);
+            if(cache.isIdle()) {
+                SvnSessionPool.closeDefault();
+            }
+        }
+    }
+
+    /**
+     * @return scratch space for temporary clones
+     */
+    private synchronized Workspace getWorkspace() {
+        if(workspace == null) {
+            workspace = new Workspace(workspaceDirectory, workspaceMaxSize * 1024L * 1024L);
+        }
+        return workspace;
+    }
+
+    /**
+     * @return whether Git repositories are mirrored
+     */
+    private boolean isGitMirrorUsed() {
+        return gitUseMirror && gitMirrorDirectory != null;
+    }
+
+    /**
+     * @return local mirrors of Git repositories
+     */
+    private synchronized GitMirrorCache getGitMirrorCache() {
+        if(gitMirrorCache == null) {
+            gitMirrorCache = new GitMirrorCache(new Workspace(gitMirrorDirectory, gitMirrorMaxSize * 1024L * 1024L));
+        }
+        return gitMirrorCache;
+    }
+
+    /**
+     * Evicts the least recently used entries of the workspaces used by this 
+     * build, and logs how much space was reclaimed.
+     */
+    private void cleanWorkspaces() {
+        if(workspace != null) {
+            this.cleanWorkspace(workspace);
+        }
+        if(gitMirrorCache != null) {
+            this.cleanWorkspace(gitMirrorCache.getWorkspace());
+        }
+    }
+
+    private void cleanWorkspace(Workspace workspace) {
+        try {
+            workspace.evict();
+        } catch (AuthorshipException ae) {
+            getLog().warn("Failed to clean workspace ["+workspace.getDirectory().getAbsolutePath()+"]: " + ae.getMessage(), ae);
+        }
+        getLog().info("Workspace ["+workspace.getDirectory().getAbsolutePath()+"]: reclaimed " 
+                + workspace.getReclaimedBytes() + " bytes, " + workspace.getDeletedEntries() 
+                + " entries deleted and " + workspace.getEvictedEntries() + " evicted.");
+    }
+
+    /**
+     * @return the project base directory relative to the enclosing Git 
+     * working tree, or <code>null</code> if there is none.
+     */
+    private String getGitPathPrefix() {
+        final File gitDir = new FileRepositoryBuilder().findGitDir(project.getBasedir()).getGitDir();
+        if(gitDir == null) {
+            return null;
+        }
+        final String workTree = gitDir.getAbsoluteFile().getParentFile().getAbsolutePath();
+        final String basedir = project.getBasedir().getAbsolutePath();
+        if(!basedir.startsWith(workTree)) {
+            return null;
+        }
+        return StringUtils.removeStart(basedir.substring(workTree.length()).replace(File.separatorChar, '/'), "/");
+    }
+
+    /**
+     * @return Git options from the mojo configuration
+     */
+    private GitOptions getGitOptions() {
+        final GitOptions options = new GitOptions();
+        options.setMetadataOnly(gitMetadataOnly);
+        options.setMaxCount(gitMaxCount);
+        options.setThreads(gitThreads > 0 ? gitThreads : Runtime.getRuntime().availableProcessors());
+        options.setScanThreads(gitScanThreads);
+        if(StringUtils.isNotBlank(gitSince)) {
+            try {
+                options.setSince(new SimpleDateFormat(GIT_SINCE_FORMAT).parse(gitSince));
+            } catch (ParseException pe) {
+                getLog().warn("Invalid gitSince date ["+gitSince+"], expected format is "+GIT_SINCE_FORMAT+". Analysing all commits.");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return SVN options from the mojo configuration
+     */
+    private SvnOptions getSvnOptions() {
+        final SvnOptions options = new SvnOptions();
+        options.setLean(svnLean);
+        options.setThreads(svnThreads);
+        options.setChunkSize(svnChunkSize);
+        options.setLimit(svnLimit);
+        return options;
+    }
+
     /**
      * @param connection
      * @return
      */
     private PROTOCOL geSvnProtocol(String connection) {
-        if(connection.indexOf("scm:svn:http:") >= 0) {
+        if(connection.indexOf("scm:svn:http") >= 0) {
             return PROTOCOL.HTTP_HTTPS;
+        } else if(connection.indexOf("scm:svn:file:") >= 0) {
+            return PROTOCOL.FILE;
         } else {
             return PROTOCOL.SVN;
         }
@@ -168,28 +819,123 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
     }
 
     /**
-     * @return list of authors from Java source files.
+     * @return the aliases of the mailmap and alias files
      */
-    private Set<Author> getJavaSourceAuthors() {
-        Set<Author> authors = new LinkedHashSet<Author>();
-        final List<?> srcs = this.getCompileSourceRoots();
-        if(srcs != null && srcs.size() > 0) {
-            Iterator<?> iterator = srcs.iterator();
-            while(iterator.hasNext()) {
-                final String src = (String) iterator.next();
-                final JavaSourceStrategy strategy = new JavaSourceStrategy(src);
+    private Aliases getAliases() {
+        final Aliases aliases = new Aliases();
+        if(mailmapFile != null && mailmapFile.isFile()) {
+            try {
+                aliases.readMailmap(mailmapFile);
+            } catch (IOException ioe) {
+                getLog().warn("Failed to read mailmap file [" + mailmapFile.getAbsolutePath() + "]: " + ioe.getMessage());
+            }
+        }
+        if(aliasFile != null) {
+            try {
+                aliases.readAliasFile(aliasFile);
+            } catch (IOException ioe) {
+                getLog().warn("Failed to read alias file [" + aliasFile.getAbsolutePath() + "]: " + ioe.getMessage());
+            }
+        }
+        return aliases;
+    }
+    
+    /**
+     * Reads the authors from the source files, reading the roots 
+     * concurrently.
+     * 
+     * @param roots receives the authors of each source root, by root
+     */
+    private void getSourceAuthors(Map<String, AuthorBuffer<Author>> roots) {
+        if(roots.isEmpty()) {
+            getLog().info("No sources directory found. Skipping authorship from source files (@author tags).");
+            return;
+        }
+        final int threads = sourceThreads > 0 ? sourceThreads : Runtime.getRuntime().availableProcessors();
+        // the roots are read concurrently, sharing the threads
+        final int rootThreads = Math.max(1, threads / roots.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(roots.size(), threads));
+        final Map<String, Future<Boolean>> results = new LinkedHashMap<String, Future<Boolean>>();
+        try {
+            for(final Map.Entry<String, AuthorBuffer<Author>> root : roots.entrySet()) {
+                results.put(root.getKey(), executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        final SourceStrategy strategy = new SourceStrategy(root.getKey(), rootThreads, 
+                                StringUtils.split(sourceExtensions, ", "));
+                        strategy.setEncoding(sourceEncoding);
+                        strategy.setFullScan(sourceFullScan);
+                        strategy.setCacheDirectory(cacheDirectory);
+                        strategy.setContentHash(sourceContentHash);
+                        return strategy.readAuthors(root.getValue());
+                    }
+                }));
+            }
+            for(Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
                 try {
-                    authors = strategy.getAuthors();
-                } catch (AuthorshipException ae) {
-                    getLog().warn("Failed to retrieve authors from [" + src + "]", ae);
+                    result.getValue().get();
+                } catch (ExecutionException ee) {
+                    getLog().warn("Failed to retrieve authors from [" + result.getKey() + "]", ee.getCause());
                 }
             }
-        } else {
-            getLog().info("No Java sources directory found. Skipping authorship from Java sources (@author tags).");
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            getLog().warn("Interrupted while retrieving authors from source files");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * @param roots authors of each source root, by root
+     * @param stop whether to stop reading the roots
+     * @return the authors found so far, by source root relative to the 
+     * project base directory
+     */
+    private Map<String, Set<Author>> getSourceRootAuthors(Map<String, AuthorBuffer<Author>> roots, boolean stop) {
+        final Map<String, Set<Author>> authors = new LinkedHashMap<String, Set<Author>>();
+        for(Map.Entry<String, AuthorBuffer<Author>> root : roots.entrySet()) {
+            if(stop) {
+                root.getValue().stop();
+            }
+            authors.put(this.getRelativePath(root.getKey()), root.getValue().getAuthors());
         }
         return authors;
     }
     
+    /**
+     * @return the existing compile, test and extra source roots, without 
+     * duplicates
+     */
+    private List<String> getSourceRoots() {
+        final Set<String> roots = new LinkedHashSet<String>();
+        final List<String> candidates = new ArrayList<String>();
+        candidates.addAll(this.getCompileSourceRoots());
+        candidates.addAll(this.getTestCompileSourceRoots());
+        if(sourceRoots != null) {
+            for(File sourceRoot : sourceRoots) {
+                candidates.add(sourceRoot.getAbsolutePath());
+            }
+        }
+        for(String candidate : candidates) {
+            final File root = new File(candidate);
+            if(root.isDirectory()) {
+                roots.add(root.getAbsolutePath());
+            }
+        }
+        return new ArrayList<String>(roots);
+    }
+    
+    /**
+     * @return the path relative to the project base directory, for display
+     */
+    private String getRelativePath(String path) {
+        final String basedir = project.getBasedir() == null ? null : project.getBasedir().getAbsolutePath();
+        if(basedir != null && path.startsWith(basedir + File.separator)) {
+            return path.substring(basedir.length() + 1).replace(File.separatorChar, '/');
+        }
+        return path;
+    }
+    
     /**
      * @return list of authors from pom.xml.
      */
@@ -204,12 +950,7 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
                 Author author = new Author();
                 author.setId(developer.getId());
                 author.setName(developer.getName());
-                final String email = developer.getEmail();
-                if(EmailValidator.getInstance().isValid(email)) {
-                    author.setEmail(developer.getEmail());
-                } else {
-                    author.setEmail(this.getPomEmail(email));
-                }
+                author.setEmail(AuthorUtil.getPomEmail(developer.getEmail()));
                 author.setUrl(developer.getUrl());
                 authors.add(author);
             }
@@ -219,26 +960,6 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
         return authors;
     }
     
-    /**
-     * TBD: move this method to some helper class. It could even be a procedure using 
-     * [functor].
-     * 
-     * @param email raw email from pom.xml that could not be validated using commons email validator
-     * @return formatted email from pom.xml.
-     */
-    private String getPomEmail(String email) {
-        try {
-            email = email.replaceAll("(?i)\\s+AT", "@"); // (?i) is for case insensitive
-            email = email.replaceAll("(?i)_AT_", "@");
-            email = email.replaceAll("(?i)\\s+DOT", ".");
-            email = email.replaceAll("(?i)_DOT_", ".");
-            email = email.replaceAll("\\s", ""); 
-        } catch (Throwable t) {
-            getLog().warn("Failed to retrieve e-mail from pom.xml author ["+email+"]: " + t.getMessage(), t);
-        }
-        return email;
-    }
-
     /* (non-Javadoc)
      * @see org.apache.maven.reporting.MavenReport#getDescription(java.util.Locale)
      */
@@ -279,12 +1000,116 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
     {
         return project.getExecutionProject().getCompileSourceRoots();
     }
+    
+    /**
+     * Returns the testCompileSourceRoots for the currently executing project.
+     */
+    @SuppressWarnings( "unchecked" )
+    private List<String> getTestCompileSourceRoots()
+    {
+        return project.getExecutionProject().getTestCompileSourceRoots();
+    }
+
+    /**
+     * Collects something for the report, e.g. the authors of a source, in 
+     * its own thread.
+     */
+    private abstract static class Collector<T> implements Callable<T> {
+        
+        private final String name;
+        private volatile long started = 0L;
+        private long submitted;
+        private Future<T> future;
+        
+        Collector(String name) {
+            this.name = name;
+        }
+        
+        public final T call() throws Exception {
+            this.started = System.nanoTime();
+            return this.collect();
+        }
+        
+        protected abstract T collect() throws Exception;
+        
+        /**
+         * Stops collecting.
+         * 
+         * @return what was collected so far, or <code>null</code>
+         */
+        protected T partial() {
+            return null;
+        }
+    }
+    
+    private <T> Collector<T> submit(ExecutorService executor, Collector<T> collector) {
+        collector.submitted = System.nanoTime();
+        collector.future = executor.submit(collector);
+        return collector;
+    }
+    
+    /**
+     * Waits for a collector, for up to the collector timeout after it 
+     * started. A collector still queued the collector timeout after it was 
+     * submitted, e.g. behind collectors ignoring their cancellation, is 
+     * cancelled without running.
+     * 
+     * @return what was collected, the partial result if the collector timed 
+     * out or failed, or <code>null</code>
+     */
+    private <T> T await(Collector<T> collector) throws InterruptedException {
+        final long timeout = TimeUnit.SECONDS.toNanos(collectorTimeout);
+        while(true) {
+            try {
+                if(timeout <= 0L) {
+                    return collector.future.get();
+                }
+                final long started = collector.started;
+                final long remaining = (started == 0L ? collector.submitted : started) + timeout - System.nanoTime();
+                return collector.future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException te) {
+                final long started = collector.started;
+                if(System.nanoTime() - (started == 0L ? collector.submitted : started) >= timeout) {
+                    final T partial = collector.partial();
+                    collector.future.cancel(true);
+                    getLog().warn("Timed out after " + collectorTimeout + " seconds collecting from " + collector.name 
+                            + ", the report may be incomplete");
+                    return partial;
+                }
+            } catch (ExecutionException ee) {
+                getLog().warn("Failed to collect from " + collector.name + ": " + ee.getCause().getMessage(), ee.getCause());
+                return collector.partial();
+            }
+        }
+    }
+
+    /**
+     * Gives the cancelled collectors a moment to stop.
+     * 
+     * @return whether no collector is running anymore
+     */
+    private boolean awaitTermination(ExecutorService executor) {
+        try {
+            return executor.awaitTermination(COLLECTOR_GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return executor.isTerminated();
+        }
+    }
 
     /* (non-Javadoc)
      * @see org.apache.maven.reporting.AbstractMavenReport#executeReport(java.util.Locale)
      */
     @Override
     public void executeReport(Locale locale) throws MavenReportException {
+        try {
+            this.report(locale);
+        } finally {
+            this.finishModule();
+        }
+    }
+
+    private void report(Locale locale) throws MavenReportException {
         // Step 0: Checking pom availability
         if ( "pom".equals( project.getPackaging() ) ) {
             getLog().info( "Skipping pom project" );
@@ -303,10 +1128,94 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
             }
         }
         
-        // Step 1: Analyze the project
-        final Set<Author> pomAuthors = this.getPomAuthors();
-        final Set<Author> scmAuthors = this.getScmAuthors();
-        final Set<Author> srcAuthors = this.getJavaSourceAuthors();
+        // Step 1: Analyze the project, collecting from pom.xml, SCM and 
+        // source files concurrently
+        final AuthorBuffer<Author> scmBuffer = new AuthorBuffer<Author>();
+        final Map<String, AuthorBuffer<Author>> srcBuffers = new LinkedHashMap<String, AuthorBuffer<Author>>();
+        for(String root : this.getSourceRoots()) {
+            srcBuffers.put(root, new AuthorBuffer<Author>());
+        }
+        final Set<Author> pomAuthors;
+        final Set<Author> scmAuthors;
+        final Map<String, Set<Author>> srcRootAuthors;
+        final Ownership ownership;
+        final Map<Author, Integer> moduleAuthors;
+        final ExecutorService executor = Executors.newFixedThreadPool(collectorThreads > 0 ? collectorThreads : COLLECTORS, 
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable runnable) {
+                    // a timed out collector may ignore interrupts, it must 
+                    // not keep the build alive
+                    final Thread thread = new Thread(runnable, "authorship-collector-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        try {
+            final Collector<Set<Author>> pomCollector = this.submit(executor, new Collector<Set<Author>>("pom.xml") {
+                protected Set<Author> collect() {
+                    return getPomAuthors();
+                }
+            });
+            final Collector<Set<Author>> scmCollector = this.submit(executor, new Collector<Set<Author>>("SCM") {
+                protected Set<Author> collect() {
+                    getScmAuthors(scmBuffer);
+                    return scmBuffer.getAuthors();
+                }
+                protected Set<Author> partial() {
+                    scmBuffer.stop();
+                    return scmBuffer.getAuthors();
+                }
+            });
+            final Collector<Map<String, Set<Author>>> srcCollector = this.submit(executor, new Collector<Map<String, Set<Author>>>("source files") {
+                protected Map<String, Set<Author>> collect() {
+                    getSourceAuthors(srcBuffers);
+                    return getSourceRootAuthors(srcBuffers, false);
+                }
+                protected Map<String, Set<Author>> partial() {
+                    return getSourceRootAuthors(srcBuffers, true);
+                }
+            });
+            final Collector<Ownership> ownershipCollector = this.submit(executor, new Collector<Ownership>("SCM line ownership") {
+                protected Ownership collect() {
+                    return getScmOwnership();
+                }
+            });
+            final Collector<Map<Author, Integer>> moduleCollector = this.submit(executor, new Collector<Map<Author, Integer>>("SCM module authors") {
+                protected Map<Author, Integer> collect() {
+                    return getScmModuleAuthors();
+                }
+            });
+            pomAuthors = this.await(pomCollector);
+            scmAuthors = this.await(scmCollector);
+            srcRootAuthors = this.await(srcCollector);
+            ownership = this.await(ownershipCollector);
+            moduleAuthors = this.await(moduleCollector);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MavenReportException("Interrupted while collecting authors", ie);
+        } finally {
+            executor.shutdownNow();
+        }
+        final AuthorshipModel model = new AuthorshipModel(this.getAliases());
+        model.addAll(pomAuthors, Source.POM);
+        model.addAll(scmAuthors, Source.SCM);
+        if(srcRootAuthors != null) {
+            for(Set<Author> rootAuthors : srcRootAuthors.values()) {
+                model.addAll(rootAuthors, Source.SOURCE);
+            }
+        }
+        if(fuzzyMatching) {
+            model.matchFuzzy();
+        }
+        if(!this.awaitTermination(executor)) {
+            // timed out collectors may still use the workspace entries and 
+            // SVN sessions
+            collectorsStopped = false;
+            getLog().warn("Some collectors are still running, the workspaces are not cleaned and the SVN sessions are not closed");
+        } else {
+            this.cleanWorkspaces();
+        }
         
         // Step 2: Create sink and bundle
         Sink sink = getSink();
@@ -315,7 +1224,7 @@ public class AuthorshipReportMojo extends AbstractMavenReport {
         // Step 3: Generate the report
         AuthorshipReportView reportView = new AuthorshipReportView();
         getLog().debug("Generating authorship report...");
-        reportView.generateReport(pomAuthors, scmAuthors, srcAuthors, sink, bundle );
+        reportView.generateReport(model, srcRootAuthors, ownership, moduleAuthors, sink, bundle );
     }
 
     /* (non-Javadoc)
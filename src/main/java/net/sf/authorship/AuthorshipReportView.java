@@ -23,10 +23,19 @@
  */
 package net.sf.authorship;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 
 import net.sf.authorship.model.Author;
+import net.sf.authorship.model.AuthorshipModel;
+import net.sf.authorship.model.AuthorshipModel.Identity;
+import net.sf.authorship.model.AuthorshipModel.Source;
+import net.sf.authorship.model.Ownership;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.doxia.sink.Sink;
@@ -51,6 +60,32 @@ public class AuthorshipReportView {
      */
     public void generateReport(Set<Author> pomAuthors, Set<Author> scmAuthors,
             Set<Author> srcAuthors, Sink sink, ResourceBundle bundle) {
+        final AuthorshipModel model = new AuthorshipModel();
+        model.addAll(pomAuthors, Source.POM);
+        model.addAll(scmAuthors, Source.SCM);
+        model.addAll(srcAuthors, Source.SOURCE);
+        generateReport(model, null, null, null, sink, bundle);
+    }
+
+    /**
+     * Generates Authorship report from the authors of all the sources, 
+     * merged into identities.
+     * 
+     * @param model authors of the pom.xml, SCM and source files
+     * @param srcRootAuthors authors of each source root, may be 
+     * <code>null</code>
+     * @param ownership lines owned by each author, may be <code>null</code>
+     * @param moduleCommits commits per author that changed the module 
+     * directory, may be <code>null</code>
+     * @param sink
+     * @param bundle
+     */
+    public void generateReport(AuthorshipModel model, Map<String, Set<Author>> srcRootAuthors, 
+            Ownership ownership, Map<Author, Integer> moduleCommits, 
+            Sink sink, ResourceBundle bundle) {
+        final Set<Author> pomAuthors = model.getAuthors(Source.POM);
+        final Set<Author> scmAuthors = model.getAuthors(Source.SCM);
+        final Set<Author> srcAuthors = model.getAuthors(Source.SOURCE);
         sink.head();
         sink.title();
         sink.text("Authorship report"); 
@@ -68,14 +103,14 @@ public class AuthorshipReportView {
         sink.text("pom.xml authors");
         sink.sectionTitle2_();
         
-        generateDivergenceTable(pomAuthors, scmAuthors, srcAuthors, sink);
+        generateDivergenceTable(model, sink);
         
         sink.section2();
         sink.sectionTitle2();
         sink.text("pom.xml authors");
         sink.sectionTitle2_();
         
-        if(pomAuthors != null && pomAuthors.size() > 0) {
+        if(pomAuthors.size() > 0) {
             generateAuthorsTable(pomAuthors, sink);
         } else {
             sink.paragraph();
@@ -90,7 +125,7 @@ public class AuthorshipReportView {
         sink.text("SCM authors");
         sink.sectionTitle2_();
         
-        if(scmAuthors != null && scmAuthors.size() > 0) {
+        if(scmAuthors.size() > 0) {
             generateAuthorsTable(scmAuthors, sink);
         } else {
             sink.paragraph();
@@ -105,7 +140,7 @@ public class AuthorshipReportView {
         sink.text("Java source files authors");
         sink.sectionTitle2_();
         
-        if(scmAuthors != null && scmAuthors.size() > 0) {
+        if(srcAuthors.size() > 0) {
             generateAuthorsTable(srcAuthors, sink);
         } else {
             sink.paragraph();
@@ -116,6 +151,54 @@ public class AuthorshipReportView {
         
         sink.section2_();
         
+        if(srcRootAuthors != null && srcRootAuthors.size() > 1) {
+            sink.section2();
+            sink.sectionTitle2();
+            sink.text("Source roots");
+            sink.sectionTitle2_();
+            
+            generateSourceRootsTable(srcAuthors, srcRootAuthors, sink);
+            
+            sink.section2_();
+        }
+        
+        if(ownership != null) {
+            sink.section2();
+            sink.sectionTitle2();
+            sink.text("Line ownership");
+            sink.sectionTitle2_();
+            
+            final Map<Author, Integer> lines = ownership.getDirectoryLines(null);
+            if(lines.size() > 0) {
+                generateCountTable(lines, "Lines", sink);
+            } else {
+                sink.paragraph();
+                sink.text("No lines found in project SCM");
+                sink.paragraph_();
+                sink.horizontalRule();
+            }
+            
+            sink.section2_();
+        }
+        
+        if(moduleCommits != null) {
+            sink.section2();
+            sink.sectionTitle2();
+            sink.text("Module SCM authors");
+            sink.sectionTitle2_();
+            
+            if(moduleCommits.size() > 0) {
+                generateCountTable(moduleCommits, "Commits", sink);
+            } else {
+                sink.paragraph();
+                sink.text("No commits found in the module directory");
+                sink.paragraph_();
+                sink.horizontalRule();
+            }
+            
+            sink.section2_();
+        }
+        
         sink.section1_();
         
         sink.body_();
@@ -124,13 +207,10 @@ public class AuthorshipReportView {
     }
 
     /**
-     * @param pomAuthors
-     * @param scmAuthors
-     * @param srcAuthors
+     * @param model authors of the pom.xml, SCM and source files
      * @param sink
      */
-    private void generateDivergenceTable(Set<Author> pomAuthors,
-            Set<Author> scmAuthors, Set<Author> srcAuthors, Sink sink) {
+    private void generateDivergenceTable(AuthorshipModel model, Sink sink) {
         
         sink.paragraph();
         sink.bold();
@@ -163,41 +243,20 @@ public class AuthorshipReportView {
         sink.tableRow_();
         
         int count = 1;
-        // FIXME: we could merge the three data structures into one, and simplify it
-        for(Author author : scmAuthors) {
-            if(notInPom(author, pomAuthors)) {
-                sink.tableRow();
-                sink.tableCell();
-                sink.text(Integer.toString(count));
-                sink.tableCell_();
-                sink.tableCell();
-                sink.text(getPomAuthorValue(author));
-                sink.tableCell_();
-                sink.tableCell();
-                sink.text(getAuthorPresentInSCM(author, scmAuthors));
-                sink.tableCell_();
-                sink.tableCell();
-                sink.text(getAuthorPresentInJavaSources(author, srcAuthors));
-                sink.tableCell_();
-                sink.tableRow_();
-                ++count;
-            }
-        }
-        
-        for(Author author : srcAuthors) {
-            if(notInPom(author, pomAuthors)) {
+        for(Identity identity : model.getIdentities()) {
+            if(!identity.isIn(Source.POM)) {
                 sink.tableRow();
                 sink.tableCell();
                 sink.text(Integer.toString(count));
                 sink.tableCell_();
                 sink.tableCell();
-                sink.text(getPomAuthorValue(author));
+                sink.text(getPomAuthorValue(identity.getAuthor()));
                 sink.tableCell_();
                 sink.tableCell();
-                sink.text(getAuthorPresentInSCM(author, scmAuthors));
+                sink.text(identity.isIn(Source.SCM) ? "Yup" : "Nope");
                 sink.tableCell_();
                 sink.tableCell();
-                sink.text(getAuthorPresentInJavaSources(author, srcAuthors));
+                sink.text(identity.isIn(Source.SOURCE) ? "Yup" : "Nope");
                 sink.tableCell_();
                 sink.tableRow_();
                 ++count;
@@ -209,79 +268,121 @@ public class AuthorshipReportView {
 
     /**
      * @param author
-     * @param pomAuthors 
      * @return
      */
-    private boolean notInPom(Author author, Set<Author> pomAuthors) {
-        boolean found = Boolean.TRUE;
-        for(Author pomAuthor : pomAuthors) {
-            if(author.getId()!=null && pomAuthor.getId()!=null && author.getId().equals(pomAuthor.getId())) {
-                found = Boolean.FALSE;
-                break;
-            }
-            if(author.getName()!=null && pomAuthor.getName()!=null && author.getName().equals(pomAuthor.getName())) {
-                found = Boolean.FALSE;
-                break;
-            }
-            if(author.getEmail()!=null && pomAuthor.getEmail()!=null && author.getEmail().equals(pomAuthor.getEmail())) {
-                found = Boolean.FALSE;
-                break;
-            }
-        }
-        return found;
+    private String getPomAuthorValue(Author author) {
+        StringBuilder authorValue = new StringBuilder();
+        authorValue.append("id="+StringUtils.defaultIfBlank(author.getId(), "<empty>"));
+        authorValue.append(", name="+StringUtils.defaultIfBlank(author.getName(), "<empty>"));
+        authorValue.append(", email="+StringUtils.defaultIfBlank(author.getEmail(), "<empty>"));
+        return authorValue.toString();
     }
 
     /**
-     * @param author
-     * @param scmAuthors
-     * @return
+     * @param counts count (e.g. lines or commits) for each author
+     * @param countTitle title of the count column
+     * @param sink
      */
-    private String getAuthorPresentInSCM(Author author, Set<Author> scmAuthors) {
-        for(Author scmAuthor : scmAuthors) {
-            if(author.getId()!=null && scmAuthor.getId()!=null && author.getId().equals(scmAuthor.getId())) {
-                return "Yup";
-            }
-            if(author.getName()!=null && scmAuthor.getName()!=null && author.getName().equals(scmAuthor.getName())) {
-                return "Yup";
-            }
-            if(author.getEmail()!=null && scmAuthor.getEmail()!=null && author.getEmail().equals(scmAuthor.getEmail())) {
-                return "Yup";
+    private void generateCountTable(Map<Author, Integer> counts, String countTitle, Sink sink) {
+        long total = 0;
+        for(Integer count : counts.values()) {
+            total += count;
+        }
+        final List<Map.Entry<Author, Integer>> entries = new ArrayList<Map.Entry<Author, Integer>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Author, Integer>>() {
+            public int compare(Map.Entry<Author, Integer> o1, Map.Entry<Author, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
             }
+        });
+        
+        sink.table();
+        sink.tableRow();
+        sink.tableCell();
+        sink.bold();
+        sink.text("Name");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.bold();
+        sink.text("E-mail");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.bold();
+        sink.text(countTitle);
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.bold();
+        sink.text("%");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableRow_();
+        
+        for(Map.Entry<Author, Integer> entry : entries) {
+            sink.tableRow();
+            sink.tableCell();
+            sink.text(StringUtils.defaultIfBlank(entry.getKey().getName(), ""));
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(StringUtils.defaultIfBlank(entry.getKey().getEmail(), ""));
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(Integer.toString(entry.getValue()));
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(String.format("%.1f", 100.0 * entry.getValue() / total));
+            sink.tableCell_();
+            sink.tableRow_();
         }
-        return "Nope";
+        sink.table_();
     }
 
     /**
-     * @param author
-     * @param srcAuthors
-     * @return
+     * @param srcAuthors authors of all the source roots
+     * @param srcRootAuthors authors of each source root
+     * @param sink
      */
-    private String getAuthorPresentInJavaSources(Author author,
-            Set<Author> srcAuthors) {
-        for(Author srcAuthor : srcAuthors) {
-            if(author.getId()!=null && srcAuthor.getId()!=null && author.getId().equals(srcAuthor.getId())) {
-                return "Yup";
-            }
-            if(author.getName()!=null && srcAuthor.getName()!=null && author.getName().equals(srcAuthor.getName())) {
-                return "Yup";
-            }
-            if(author.getEmail()!=null && srcAuthor.getEmail()!=null && author.getEmail().equals(srcAuthor.getEmail())) {
-                return "Yup";
+    private void generateSourceRootsTable(Set<Author> srcAuthors, Map<String, Set<Author>> srcRootAuthors, Sink sink) {
+        sink.table();
+        sink.tableRow();
+        sink.tableCell();
+        sink.bold();
+        sink.text("Name");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.bold();
+        sink.text("E-mail");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.bold();
+        sink.text("Source roots");
+        sink.bold_();
+        sink.tableCell_();
+        sink.tableRow_();
+        
+        for(Author author : srcAuthors) {
+            final List<String> roots = new ArrayList<String>();
+            for(Map.Entry<String, Set<Author>> entry : srcRootAuthors.entrySet()) {
+                if(entry.getValue().contains(author)) {
+                    roots.add(entry.getKey());
+                }
             }
+            sink.tableRow();
+            sink.tableCell();
+            sink.text(StringUtils.defaultIfBlank(author.getName(), ""));
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(StringUtils.defaultIfBlank(author.getEmail(), ""));
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(StringUtils.join(roots, ", "));
+            sink.tableCell_();
+            sink.tableRow_();
         }
-        return "Nope";
-    }
-
-    /**
-     * @param author
-     * @return
-     */
-    private String getPomAuthorValue(Author author) {
-        StringBuilder authorValue = new StringBuilder();
-        authorValue.append("id="+StringUtils.defaultIfBlank(author.getId(), "<empty>"));
-        authorValue.append(", name="+StringUtils.defaultIfBlank(author.getName(), "<empty>"));
-        authorValue.append(", email="+StringUtils.defaultIfBlank(author.getEmail(), "<empty>"));
-        return authorValue.toString();
+        sink.table_();
     }
 
     /**
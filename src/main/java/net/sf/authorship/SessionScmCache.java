@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.authorship.model.PathIndex;
+import net.sf.authorship.util.AuthorshipException;
+
+/**
+ * Path indexes of the SCM repositories scanned during a Maven session, so 
+ * that the modules of a reactor share one scan of each repository. The 
+ * first module asking for a repository scans it, and the modules asking 
+ * for it meanwhile wait for that scan.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class SessionScmCache {
+
+    private static final Map<Object, SessionScmCache> SESSIONS = 
+        Collections.synchronizedMap(new WeakHashMap<Object, SessionScmCache>());
+
+    private final ConcurrentMap<String, FutureTask<PathIndex>> indexes = 
+        new ConcurrentHashMap<String, FutureTask<PathIndex>>();
+
+    private final AtomicInteger finished = new AtomicInteger(0);
+
+    private volatile boolean idle = true;
+
+    private SessionScmCache() {
+        super();
+    }
+
+    /**
+     * @param session Maven session
+     * @return the cache of the session, created if needed
+     */
+    static SessionScmCache get(Object session) {
+        synchronized (SESSIONS) {
+            SessionScmCache cache = SESSIONS.get(session);
+            if(cache == null) {
+                cache = new SessionScmCache();
+                SESSIONS.put(session, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Drops the cache of a session, once its last module was reported.
+     * 
+     * @param session Maven session
+     */
+    static void remove(Object session) {
+        SESSIONS.remove(session);
+    }
+
+    /**
+     * Counts a module of the session as reported. Modules may finish in any 
+     * order, e.g. in parallel builds.
+     * 
+     * @param modules number of modules of the reactor
+     * @param stopped whether the collectors of the module stopped
+     * @return whether it was the last module of the session
+     */
+    boolean finish(int modules, boolean stopped) {
+        if(!stopped) {
+            idle = false;
+        }
+        return finished.incrementAndGet() == modules;
+    }
+
+    /**
+     * @return whether the collectors of every module reported so far stopped
+     */
+    boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * @param key repository key, e.g. its SCM url
+     * @param scan scans the repository, if no module of the session did yet
+     * @return the path index of the repository
+     */
+    PathIndex getIndex(String key, Callable<PathIndex> scan) throws AuthorshipException {
+        FutureTask<PathIndex> task = new FutureTask<PathIndex>(scan);
+        final FutureTask<PathIndex> existing = indexes.putIfAbsent(key, task);
+        if(existing != null) {
+            task = existing;
+        } else {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while waiting for the scan of ["+key+"]", ie);
+        } catch (ExecutionException ee) {
+            // a failed scan is retried by the next module
+            indexes.remove(key, task);
+            if(ee.getCause() instanceof AuthorshipException) {
+                throw (AuthorshipException) ee.getCause();
+            }
+            throw new AuthorshipException("Failed to scan ["+key+"]: " + ee.getCause().getMessage(), ee.getCause());
+        }
+    }
+
+}
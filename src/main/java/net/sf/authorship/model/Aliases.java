@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Known aliases of the same person, read from a Git <i>.mailmap</i> file or 
+ * from an alias file. Used by {@link AuthorshipModel} to merge identities 
+ * that share no id, name or e-mail.
+ * 
+ * <p>Each line of an alias file lists the aliases of one person, separated 
+ * by <i>=</i> or <i>,</i>, e.g. <i>jdoe = John Doe &lt;jdoe@corp&gt;, J. Doe</i>. 
+ * An alias is either <i>name &lt;e-mail&gt;</i>, an e-mail, or a word 
+ * matching an id or a name. Lines starting with <i>#</i> are comments.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class Aliases {
+
+    private static final Pattern NAME_EMAIL = Pattern.compile("([^<>]*)<([^<>]*)>");
+    
+    private static final Pattern ALIAS_SEPARATORS = Pattern.compile("[=,]");
+    
+    private final Map<String, Set<String>> groups = new HashMap<String, Set<String>>();
+    
+    /**
+     * Default constructor.
+     */
+    public Aliases() {
+        super();
+    }
+    
+    /**
+     * Reads a Git <i>.mailmap</i> file. A line maps the commit e-mail, or the 
+     * commit name and e-mail, to the proper name and e-mail:
+     * 
+     * <ul>
+     * <li><i>Proper Name &lt;commit@email&gt;</i></li>
+     * <li><i>&lt;proper@email&gt; &lt;commit@email&gt;</i></li>
+     * <li><i>Proper Name &lt;proper@email&gt; &lt;commit@email&gt;</i></li>
+     * <li><i>Proper Name &lt;proper@email&gt; Commit Name &lt;commit@email&gt;</i></li>
+     * </ul>
+     * 
+     * @param file mailmap file
+     * @throws IOException
+     */
+    public void readMailmap(File file) throws IOException {
+        for(String line : readLines(file)) {
+            final Matcher matcher = NAME_EMAIL.matcher(line);
+            final List<String[]> entries = new ArrayList<String[]>(2);
+            while(matcher.find() && entries.size() < 2) {
+                entries.add(new String[] { matcher.group(1).trim(), matcher.group(2).trim() });
+            }
+            if(entries.isEmpty()) {
+                continue;
+            }
+            final String[] proper = entries.get(0);
+            final Set<String> keys = new LinkedHashSet<String>();
+            addKey(keys, AuthorshipModel.NAME_KEY, proper[0]);
+            if(entries.size() == 1) {
+                addKey(keys, AuthorshipModel.EMAIL_KEY, proper[1]);
+            } else {
+                final String[] commit = entries.get(1);
+                addKey(keys, AuthorshipModel.EMAIL_KEY, proper[1]);
+                if(commit[0].length() > 0) {
+                    keys.add(AuthorshipModel.getNameEmailKey(commit[0], commit[1]));
+                } else {
+                    addKey(keys, AuthorshipModel.EMAIL_KEY, commit[1]);
+                }
+            }
+            this.add(keys);
+        }
+    }
+    
+    /**
+     * Reads an alias file.
+     * 
+     * @param file alias file
+     * @throws IOException
+     */
+    public void readAliasFile(File file) throws IOException {
+        for(String line : readLines(file)) {
+            final Set<String> keys = new LinkedHashSet<String>();
+            for(String alias : ALIAS_SEPARATORS.split(line)) {
+                alias = alias.trim();
+                final Matcher matcher = NAME_EMAIL.matcher(alias);
+                if(matcher.matches()) {
+                    addKey(keys, AuthorshipModel.NAME_KEY, matcher.group(1));
+                    addKey(keys, AuthorshipModel.EMAIL_KEY, matcher.group(2));
+                } else if(alias.indexOf('@') >= 0) {
+                    addKey(keys, AuthorshipModel.EMAIL_KEY, alias);
+                } else {
+                    addKey(keys, AuthorshipModel.ID_KEY, alias);
+                    addKey(keys, AuthorshipModel.NAME_KEY, alias);
+                }
+            }
+            this.add(keys);
+        }
+    }
+    
+    /**
+     * Adds a group of keys of the same person, merging the groups sharing 
+     * a key.
+     */
+    void add(Collection<String> keys) {
+        if(keys.size() < 2) {
+            return;
+        }
+        final Set<String> group = new LinkedHashSet<String>(keys);
+        for(String key : keys) {
+            final Set<String> existing = this.groups.get(key);
+            if(existing != null) {
+                group.addAll(existing);
+            }
+        }
+        for(String key : group) {
+            this.groups.put(key, group);
+        }
+    }
+    
+    /**
+     * @param key identity key
+     * @return the keys of the same person, including the key, or an empty 
+     * set
+     */
+    Set<String> expand(String key) {
+        final Set<String> group = this.groups.get(key);
+        return group == null ? Collections.<String>emptySet() : group;
+    }
+    
+    /**
+     * @return whether no aliases are known
+     */
+    public boolean isEmpty() {
+        return this.groups.isEmpty();
+    }
+    
+    private static void addKey(Set<String> keys, String prefix, String value) {
+        final String normalized = AuthorshipModel.normalize(value);
+        if(normalized != null) {
+            keys.add(prefix + normalized);
+        }
+    }
+    
+    /**
+     * @return the lines of the file, trimmed, without blank lines and 
+     * comments
+     */
+    private static List<String> readLines(File file) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = null;
+            while((line = reader.readLine()) != null) {
+                line = StringUtils.substringBefore(line, "#").trim();
+                if(line.length() > 0) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+    
+}
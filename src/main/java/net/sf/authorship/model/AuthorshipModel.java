@@ -0,0 +1,505 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Authors found in each source (pom.xml, SCM and source files), merged into 
+ * identities. Authors sharing an id, a name or an e-mail, compared 
+ * normalized (Unicode decomposed without accents, lower case, single 
+ * spaced), or known to be aliases, are the same identity, transitively. 
+ * Lookups go through hash indexes, so merging all the sources takes near 
+ * linear time. {@link #matchFuzzy()} merges further the identities with 
+ * similar names and logins.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class AuthorshipModel {
+
+    /**
+     * Where an author was found.
+     */
+    public enum Source { POM, SCM, SOURCE }
+    
+    static final String ID_KEY = "id:";
+    static final String NAME_KEY = "name:";
+    static final String EMAIL_KEY = "email:";
+    static final String NAME_EMAIL_KEY = "name+email:";
+    
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+    
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    
+    private static final Pattern NAME_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    /**
+     * E-mail local parts shared by many people, never used as logins.
+     */
+    private static final Set<String> SHARED_MAILBOXES = new HashSet<String>(Arrays.asList(
+        "admin", "build", "ci", "contact", "dev", "git", "hudson", "info", "jenkins", 
+        "mail", "no-reply", "noreply", "root", "support", "svn", "team", "webmaster"));
+    
+    private final Aliases aliases;
+    private final Map<Source, Set<Author>> authors = new EnumMap<Source, Set<Author>>(Source.class);
+    private final List<Identity> identities = new ArrayList<Identity>();
+    private final Map<String, Identity> index = new HashMap<String, Identity>();
+    
+    /**
+     * Default constructor.
+     */
+    public AuthorshipModel() {
+        this(null);
+    }
+    
+    /**
+     * @param aliases known aliases, may be <code>null</code>
+     */
+    public AuthorshipModel(Aliases aliases) {
+        super();
+        this.aliases = aliases;
+        for(Source source : Source.values()) {
+            this.authors.put(source, new LinkedHashSet<Author>());
+        }
+    }
+    
+    /**
+     * @param authors authors
+     * @param source where the authors were found
+     */
+    public void addAll(Collection<Author> authors, Source source) {
+        if(authors != null) {
+            for(Author author : authors) {
+                this.add(author, source);
+            }
+        }
+    }
+    
+    /**
+     * Adds an author, merging it into the identities it matches.
+     * 
+     * @param author author
+     * @param source where the author was found
+     * @return the identity of the author
+     */
+    public Identity add(Author author, Source source) {
+        this.authors.get(source).add(author);
+        final Set<String> keys = this.getKeys(author);
+        Identity identity = this.lookup(keys);
+        if(identity == null) {
+            identity = new Identity(this.identities.size());
+            this.identities.add(identity);
+        }
+        identity.add(author, source);
+        for(String key : keys) {
+            final Identity indexed = this.index.get(key);
+            if(indexed == null) {
+                this.index.put(key, identity);
+            } else {
+                this.union(indexed, identity);
+            }
+        }
+        return identity.root();
+    }
+    
+    /**
+     * @param author author
+     * @return the identity matching the id, name, e-mail or aliases of the 
+     * author, or <code>null</code>
+     */
+    public Identity find(Author author) {
+        return this.lookup(this.getKeys(author));
+    }
+    
+    /**
+     * Merges the identities that are likely the same person, although they 
+     * share no id, name, e-mail or alias. Identities are grouped by blocking 
+     * keys, and only the identities of the same group are compared, so the 
+     * matching takes near linear time:
+     * 
+     * <ul>
+     * <li>last name and first initial: <i>John Doe</i> and <i>J. Doe</i> are 
+     * merged, while <i>John Doe</i> and <i>Jane Doe</i> are not, as their 
+     * first names differ. <i>J. Doe</i> is then left alone, as it could be 
+     * either;</li>
+     * <li>login: ids and e-mail local parts, e.g. <i>jdoe</i> and 
+     * <i>jdoe@corp</i>, are merged. A local part is only used if all the 
+     * e-mails having it share the same domain and it is not a shared 
+     * mailbox such as <i>noreply</i>, so that <i>john@a.com</i> and 
+     * <i>john@b.org</i> are not merged. A login made of the first initial 
+     * and the last name, e.g. <i>jdoe</i> for <i>John Doe</i>, is merged only 
+     * if a single identity has it.</li>
+     * </ul>
+     */
+    public void matchFuzzy() {
+        // snapshot, as merging moves the authors between identities
+        final List<Identity> owners = new ArrayList<Identity>();
+        final List<Author> members = new ArrayList<Author>();
+        for(Identity identity : this.getIdentities()) {
+            for(Author author : identity.getAuthors()) {
+                owners.add(identity);
+                members.add(author);
+            }
+        }
+        final Map<String, List<NameCandidate>> fullNames = new HashMap<String, List<NameCandidate>>();
+        final Map<String, Identity> logins = new HashMap<String, Identity>();
+        final Map<String, Map<String, Identity>> emailLogins = new HashMap<String, Map<String, Identity>>();
+        final Map<String, List<Identity>> nameLogins = new HashMap<String, List<Identity>>();
+        for(int i = 0 ; i < members.size() ; ++i) {
+            final Identity identity = owners.get(i);
+            final Author author = members.get(i);
+            final String[] tokens = getNameTokens(author.getName());
+            if(tokens.length > 1) {
+                final String first = tokens[0];
+                final String last = tokens[tokens.length - 1];
+                final String block = last + '|' + first.charAt(0);
+                List<NameCandidate> candidates = fullNames.get(block);
+                if(candidates == null) {
+                    candidates = new ArrayList<NameCandidate>();
+                    fullNames.put(block, candidates);
+                }
+                candidates.add(new NameCandidate(identity, first));
+                final String login = first.charAt(0) + last;
+                List<Identity> loginOwners = nameLogins.get(login);
+                if(loginOwners == null) {
+                    loginOwners = new ArrayList<Identity>();
+                    nameLogins.put(login, loginOwners);
+                }
+                loginOwners.add(identity);
+            } else if(tokens.length == 1) {
+                this.addLogin(logins, tokens[0], identity);
+            }
+            this.addLogin(logins, normalize(author.getId()), identity);
+            final String email = normalize(author.getEmail());
+            final int at = email != null ? email.indexOf('@') : -1;
+            if(at > 0 && !SHARED_MAILBOXES.contains(email.substring(0, at))) {
+                Map<String, Identity> domains = emailLogins.get(email.substring(0, at));
+                if(domains == null) {
+                    domains = new HashMap<String, Identity>();
+                    emailLogins.put(email.substring(0, at), domains);
+                }
+                this.addLogin(domains, email.substring(at + 1), identity);
+            }
+        }
+        for(Map.Entry<String, Map<String, Identity>> entry : emailLogins.entrySet()) {
+            if(entry.getValue().size() == 1) {
+                this.addLogin(logins, entry.getKey(), entry.getValue().values().iterator().next());
+            }
+        }
+        for(List<NameCandidate> candidates : fullNames.values()) {
+            this.matchFirstNames(candidates);
+        }
+        for(Map.Entry<String, List<Identity>> entry : nameLogins.entrySet()) {
+            final Identity login = logins.get(entry.getKey());
+            if(login == null) {
+                continue;
+            }
+            final Set<Identity> roots = new LinkedHashSet<Identity>();
+            for(Identity identity : entry.getValue()) {
+                roots.add(identity.root());
+            }
+            if(roots.size() == 1) {
+                this.union(login, roots.iterator().next());
+            }
+        }
+    }
+    
+    /**
+     * @param source source
+     * @return the authors found in the source, as added
+     */
+    public Set<Author> getAuthors(Source source) {
+        return Collections.unmodifiableSet(this.authors.get(source));
+    }
+    
+    /**
+     * @return the identities, in the order they were first found
+     */
+    public List<Identity> getIdentities() {
+        final List<Identity> roots = new ArrayList<Identity>();
+        for(Identity identity : this.identities) {
+            if(identity.root() == identity) {
+                roots.add(identity);
+            }
+        }
+        return roots;
+    }
+    
+    /**
+     * Merges two identities. The one found first is kept.
+     * 
+     * @return the merged identity
+     */
+    protected Identity union(Identity a, Identity b) {
+        a = a.root();
+        b = b.root();
+        if(a == b) {
+            return a;
+        }
+        if(b.order < a.order) {
+            final Identity swap = a;
+            a = b;
+            b = swap;
+        }
+        b.parent = a;
+        a.sources.addAll(b.sources);
+        for(Author author : b.authors) {
+            a.merge(author);
+        }
+        a.authors.addAll(b.authors);
+        b.authors.clear();
+        return a;
+    }
+    
+    /**
+     * Merges the identities of a last name and first initial block having 
+     * the same first name. Initials are merged with the full first name 
+     * only if the block has a single full first name, so that <i>J. Doe</i> 
+     * does not join <i>John Doe</i> and <i>Jane Doe</i>.
+     */
+    private void matchFirstNames(List<NameCandidate> candidates) {
+        final Map<String, Identity> firstNames = new LinkedHashMap<String, Identity>();
+        final List<Identity> initials = new ArrayList<Identity>();
+        for(NameCandidate candidate : candidates) {
+            if(candidate.firstName.length() == 1) {
+                initials.add(candidate.identity);
+            } else {
+                final Identity same = firstNames.get(candidate.firstName);
+                if(same == null) {
+                    firstNames.put(candidate.firstName, candidate.identity);
+                } else {
+                    this.union(same, candidate.identity);
+                }
+            }
+        }
+        Identity target = firstNames.size() == 1 ? firstNames.values().iterator().next() : null;
+        if(target == null && firstNames.isEmpty() && !initials.isEmpty()) {
+            target = initials.get(0);
+        }
+        if(target != null) {
+            for(Identity initial : initials) {
+                this.union(target, initial);
+            }
+        }
+    }
+    
+    private void addLogin(Map<String, Identity> logins, String login, Identity identity) {
+        if(login != null) {
+            final Identity existing = logins.get(login);
+            if(existing == null) {
+                logins.put(login, identity);
+            } else {
+                this.union(existing, identity);
+            }
+        }
+    }
+    
+    /**
+     * @return the first identity indexed by the keys, or <code>null</code>
+     */
+    private Identity lookup(Set<String> keys) {
+        for(String key : keys) {
+            final Identity identity = this.index.get(key);
+            if(identity != null) {
+                return identity.root();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return the index keys of the author, including the keys of its 
+     * aliases
+     */
+    private Set<String> getKeys(Author author) {
+        final Set<String> keys = new LinkedHashSet<String>();
+        final String id = normalize(author.getId());
+        final String name = normalize(author.getName());
+        final String email = normalize(author.getEmail());
+        if(id != null) {
+            keys.add(ID_KEY + id);
+        }
+        if(name != null) {
+            keys.add(NAME_KEY + name);
+        }
+        if(email != null) {
+            keys.add(EMAIL_KEY + email);
+        }
+        if(this.aliases != null && !this.aliases.isEmpty()) {
+            if(name != null && email != null) {
+                keys.add(getNameEmailKey(name, email));
+            }
+            for(String key : new ArrayList<String>(keys)) {
+                keys.addAll(this.aliases.expand(key));
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * @return the key of a name and e-mail pair
+     */
+    static String getNameEmailKey(String name, String email) {
+        return NAME_EMAIL_KEY + normalize(name) + '|' + normalize(email);
+    }
+    
+    /**
+     * @return the words of the normalized name, without punctuation
+     */
+    private static String[] getNameTokens(String name) {
+        final String normalized = normalize(name);
+        if(normalized == null) {
+            return new String[0];
+        }
+        final String[] tokens = NAME_SEPARATORS.split(normalized);
+        if(tokens.length > 0 && tokens[0].length() == 0) {
+            final String[] trimmed = new String[tokens.length - 1];
+            System.arraycopy(tokens, 1, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+        return tokens;
+    }
+    
+    /**
+     * @param value id, name or e-mail
+     * @return the value decomposed without accents, trimmed, lower cased and 
+     * single spaced, or <code>null</code> if blank
+     */
+    public static String normalize(String value) {
+        if(value == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFKD);
+        normalized = MARKS.matcher(normalized).replaceAll("");
+        normalized = WHITESPACES.matcher(normalized.trim()).replaceAll(" ").toLowerCase(Locale.ENGLISH);
+        return normalized.length() == 0 ? null : normalized;
+    }
+    
+    /**
+     * A person, known by one or more authors.
+     */
+    public static class Identity {
+        
+        private final int order;
+        private Identity parent = this;
+        private final Author author = new Author();
+        private final Set<Author> authors = new LinkedHashSet<Author>();
+        private final Set<Source> sources = EnumSet.noneOf(Source.class);
+        
+        Identity(int order) {
+            this.order = order;
+        }
+        
+        Identity root() {
+            Identity root = this;
+            while(root.parent != root) {
+                root = root.parent;
+            }
+            // path compression
+            Identity node = this;
+            while(node.parent != root) {
+                final Identity next = node.parent;
+                node.parent = root;
+                node = next;
+            }
+            return root;
+        }
+        
+        void add(Author author, Source source) {
+            this.merge(author);
+            this.authors.add(author);
+            this.sources.add(source);
+        }
+        
+        private void merge(Author author) {
+            if(this.author.getId() == null) {
+                this.author.setId(author.getId());
+            }
+            if(this.author.getName() == null) {
+                this.author.setName(author.getName());
+            }
+            if(this.author.getEmail() == null) {
+                this.author.setEmail(author.getEmail());
+            }
+            if(this.author.getUrl() == null) {
+                this.author.setUrl(author.getUrl());
+            }
+        }
+        
+        /**
+         * @return the first id, name, e-mail and url found for the identity
+         */
+        public Author getAuthor() {
+            final Author root = this.root().author;
+            return new Author(root.getId(), root.getName(), root.getEmail(), root.getUrl());
+        }
+        
+        /**
+         * @return the authors of the identity
+         */
+        public Set<Author> getAuthors() {
+            return Collections.unmodifiableSet(this.root().authors);
+        }
+        
+        /**
+         * @param source source
+         * @return whether the identity was found in the source
+         */
+        public boolean isIn(Source source) {
+            return this.root().sources.contains(source);
+        }
+        
+    }
+    
+    /**
+     * An identity in a last name and first initial block.
+     */
+    private static final class NameCandidate {
+        
+        private final Identity identity;
+        private final String firstName;
+        
+        NameCandidate(Identity identity, String firstName) {
+            this.identity = identity;
+            this.firstName = firstName;
+        }
+    }
+    
+}
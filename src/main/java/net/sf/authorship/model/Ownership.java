@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Number of surviving lines owned by each author, per file.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class Ownership {
+
+    private final SortedMap<String, Map<Author, Integer>> files = new TreeMap<String, Map<Author, Integer>>();
+
+    /**
+     * Default constructor. 
+     */
+    public Ownership() {
+        super();
+    }
+
+    /**
+     * Adds lines owned by an author in a file.
+     * 
+     * @param path file path, relative to the repository root
+     * @param author author of the lines
+     * @param lines number of lines
+     */
+    public void add(String path, Author author, int lines) {
+        Map<Author, Integer> authors = files.get(path);
+        if(authors == null) {
+            authors = new LinkedHashMap<Author, Integer>();
+            files.put(path, authors);
+        }
+        final Integer count = authors.get(author);
+        authors.put(author, count == null ? lines : count + lines);
+    }
+
+    /**
+     * @return lines owned by each author, per file path
+     */
+    public SortedMap<String, Map<Author, Integer>> getFiles() {
+        return Collections.unmodifiableSortedMap(files);
+    }
+
+    /**
+     * @param path file path, relative to the repository root
+     * @return lines owned by each author in the file
+     */
+    public Map<Author, Integer> getLines(String path) {
+        final Map<Author, Integer> authors = files.get(path);
+        if(authors == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(authors);
+    }
+
+    /**
+     * @param directory directory path, relative to the repository root, or an 
+     * empty string for the whole repository
+     * @return lines owned by each author in the files under the directory
+     */
+    public Map<Author, Integer> getDirectoryLines(String directory) {
+        final Map<Author, Integer> total = new LinkedHashMap<Author, Integer>();
+        final SortedMap<String, Map<Author, Integer>> subtree;
+        if(directory == null || directory.length() == 0) {
+            subtree = files;
+        } else {
+            final String prefix = directory.endsWith("/") ? directory : directory + "/";
+            // '0' is the character after '/', so this is the range of paths starting with prefix
+            subtree = files.subMap(prefix, prefix.substring(0, prefix.length() - 1) + '0');
+        }
+        for(Map<Author, Integer> authors : subtree.values()) {
+            for(Map.Entry<Author, Integer> entry : authors.entrySet()) {
+                final Integer count = total.get(entry.getKey());
+                total.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import net.sf.authorship.util.AuthorshipException;
+
+/**
+ * Index of the authors who changed each directory, and how many of their 
+ * commits touched it. Directories are kept in a trie, so the authors of any 
+ * subtree (module, package or directory) are found without walking the 
+ * history again. The index is persisted along with the last indexed commit, 
+ * so that it can be updated incrementally.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class PathIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(PathIndex.class.getCanonicalName());
+
+    private static final int VERSION = 1;
+
+    private final List<Author> authors = new ArrayList<Author>();
+    private final Map<Author, Integer> authorIds = new HashMap<Author, Integer>();
+    private final Node root = new Node();
+    private final Map<String, String> metadata = new TreeMap<String, String>();
+    private int commit;
+
+    /**
+     * Default constructor.
+     */
+    public PathIndex() {
+        super();
+    }
+
+    /**
+     * @param key metadata key
+     * @return the metadata value, or <code>null</code>
+     */
+    public String getMetadata(String key) {
+        return metadata.get(key);
+    }
+
+    /**
+     * @param key metadata key
+     * @param value metadata value, removed if <code>null</code>
+     */
+    public void setMetadata(String key, String value) {
+        if(value == null) {
+            metadata.remove(key);
+        } else {
+            metadata.put(key, value);
+        }
+    }
+
+    /**
+     * Starts a new commit. Paths added until the next call count as one 
+     * commit for each of their directories.
+     * 
+     * @param author author of the commit
+     * @return the author id
+     */
+    public int startCommit(Author author) {
+        Integer id = authorIds.get(author);
+        if(id == null) {
+            id = authors.size();
+            authors.add(author);
+            authorIds.put(author, id);
+        }
+        ++commit;
+        return id;
+    }
+
+    /**
+     * Adds a changed file of the current commit.
+     * 
+     * @param authorId author id returned by {@link #startCommit(Author)}
+     * @param path file path, relative to the repository root
+     */
+    public void addPath(int authorId, String path) {
+        Node node = root;
+        node.increment(authorId, commit);
+        int start = 0;
+        int slash;
+        while((slash = path.indexOf('/', start)) >= 0) {
+            node = node.child(path.substring(start, slash));
+            node.increment(authorId, commit);
+            start = slash + 1;
+        }
+    }
+
+    /**
+     * @param directory directory path, relative to the repository root, or an 
+     * empty string for the whole repository
+     * @return commits that touched the directory, per author
+     */
+    public Map<Author, Integer> getAuthors(String directory) {
+        final Map<Author, Integer> result = new LinkedHashMap<Author, Integer>();
+        Node node = root;
+        if(directory != null) {
+            for(String name : directory.split("/")) {
+                if(name.length() > 0) {
+                    node = node.children.get(name);
+                    if(node == null) {
+                        return result;
+                    }
+                }
+            }
+        }
+        for(int i = 0 ; i < node.size ; ++i) {
+            result.put(authors.get(node.authorIds[i]), node.counts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param file index file
+     * @return the index read from the file, or <code>null</code> if it does not 
+     * exist or could not be read
+     */
+    public static PathIndex load(File file) {
+        if(file == null || !file.isFile()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(input.readInt() != VERSION) {
+                return null;
+            }
+            final PathIndex index = new PathIndex();
+            final int entries = input.readInt();
+            for(int i = 0 ; i < entries ; ++i) {
+                index.metadata.put(input.readUTF(), input.readUTF());
+            }
+            final int authors = input.readInt();
+            for(int i = 0 ; i < authors ; ++i) {
+                final Author author = new Author(readString(input), readString(input), readString(input), null);
+                index.authors.add(author);
+                index.authorIds.put(author, i);
+            }
+            index.root.read(input);
+            return index;
+        } catch (IOException ioe) {
+            LOGGER.warning("Failed to read path index ["+file.getAbsolutePath()+"]: " + ioe.getMessage());
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * @param file index file
+     */
+    public void store(File file) throws AuthorshipException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new AuthorshipException("Couldn't create path index directory ["+parent.getAbsolutePath()+"]");
+        }
+        final File temp = new File(parent, file.getName() + "." + System.nanoTime() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeInt(metadata.size());
+            for(Map.Entry<String, String> entry : metadata.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF(entry.getValue());
+            }
+            output.writeInt(authors.size());
+            for(Author author : authors) {
+                writeString(output, author.getId());
+                writeString(output, author.getName());
+                writeString(output, author.getEmail());
+            }
+            root.write(output);
+            output.close();
+            output = null;
+        } catch (IOException ioe) {
+            closeQuietly(output);
+            temp.delete();
+            throw new AuthorshipException("Failed to write path index ["+file.getAbsolutePath()+"]", ioe);
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                temp.delete();
+                throw new AuthorshipException("Failed to write path index ["+file.getAbsolutePath()+"]");
+            }
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if(value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                LOGGER.warning(ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A directory of the trie, with the number of commits per author id.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new TreeMap<String, Node>();
+        private int[] authorIds = new int[0];
+        private int[] counts = new int[0];
+        private int size;
+        private int lastCommit;
+
+        Node child(String name) {
+            Node child = children.get(name);
+            if(child == null) {
+                child = new Node();
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        /**
+         * Counts a commit, once even if it changed several files under this 
+         * directory.
+         */
+        void increment(int authorId, int commit) {
+            if(lastCommit == commit) {
+                return;
+            }
+            lastCommit = commit;
+            for(int i = 0 ; i < size ; ++i) {
+                if(authorIds[i] == authorId) {
+                    ++counts[i];
+                    return;
+                }
+            }
+            if(size == authorIds.length) {
+                final int capacity = Math.max(4, size * 2);
+                final int[] newIds = new int[capacity];
+                final int[] newCounts = new int[capacity];
+                System.arraycopy(authorIds, 0, newIds, 0, size);
+                System.arraycopy(counts, 0, newCounts, 0, size);
+                authorIds = newIds;
+                counts = newCounts;
+            }
+            authorIds[size] = authorId;
+            counts[size] = 1;
+            ++size;
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeInt(size);
+            for(int i = 0 ; i < size ; ++i) {
+                output.writeInt(authorIds[i]);
+                output.writeInt(counts[i]);
+            }
+            output.writeInt(children.size());
+            for(Map.Entry<String, Node> child : children.entrySet()) {
+                output.writeUTF(child.getKey());
+                child.getValue().write(output);
+            }
+        }
+
+        void read(DataInputStream input) throws IOException {
+            size = input.readInt();
+            authorIds = new int[size];
+            counts = new int[size];
+            for(int i = 0 ; i < size ; ++i) {
+                authorIds[i] = input.readInt();
+                counts[i] = input.readInt();
+            }
+            final int childCount = input.readInt();
+            for(int i = 0 ; i < childCount ; ++i) {
+                final String name = input.readUTF();
+                final Node child = new Node();
+                child.read(input);
+                children.put(name, child);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import net.sf.authorship.util.AuthorshipException;
+
+/**
+ * Base class of the streaming strategies, collecting the emitted authors into 
+ * a set for {@link #getAuthors()}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ * @param <T> author identification object
+ */
+public abstract class AbstractAuthorshipStrategy<T> implements StreamingAuthorshipStrategy<T> {
+
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.AuthorshipStrategy#getAuthors()
+     */
+    public Set<T> getAuthors() throws AuthorshipException {
+        final Set<T> authors = new LinkedHashSet<T>();
+        this.readAuthors(collect(authors));
+        return authors;
+    }
+
+    /**
+     * @param authors collection receiving the authors
+     * @return handler adding every author to the collection
+     */
+    public static <T> AuthorHandler<T> collect(final Collection<T> authors) {
+        return new AuthorHandler<T>() {
+            public boolean handleAuthor(T author) {
+                authors.add(author);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param handler handler that may receive the same author more than once
+     * @return handler passing each author only once to the given handler
+     */
+    public static <T> AuthorHandler<T> distinct(final AuthorHandler<T> handler) {
+        final Set<T> seen = new LinkedHashSet<T>();
+        return new AuthorHandler<T>() {
+            public boolean handleAuthor(T author) throws AuthorshipException {
+                return !seen.add(author) || handler.handleAuthor(author);
+            }
+        };
+    }
+
+    /**
+     * Passes authors already found to a handler.
+     * 
+     * @param authors authors
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    protected static <T> boolean emit(Collection<? extends T> authors, AuthorHandler<T> handler) throws AuthorshipException {
+        for(T author : authors) {
+            if(!handler.handleAuthor(author)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
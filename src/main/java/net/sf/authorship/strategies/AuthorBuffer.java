@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the authors of a {@link StreamingAuthorshipStrategy}, so that the 
+ * authors found so far can be read, and the strategy stopped, from another 
+ * thread while it runs. Used to keep the partial results of a strategy that 
+ * took too long.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ * @param <T> author identification object
+ */
+public class AuthorBuffer<T> implements AuthorHandler<T> {
+
+    private final Set<T> authors = new LinkedHashSet<T>();
+    private volatile boolean stopped = false;
+    
+    /**
+     * Default constructor.
+     */
+    public AuthorBuffer() {
+        super();
+    }
+    
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.AuthorHandler#handleAuthor(java.lang.Object)
+     */
+    public boolean handleAuthor(T author) {
+        if(this.stopped) {
+            return false;
+        }
+        synchronized (this.authors) {
+            this.authors.add(author);
+        }
+        return !this.stopped;
+    }
+    
+    /**
+     * Stops the strategy at its next author. Authors found afterwards are 
+     * ignored.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+    
+    /**
+     * @return whether the buffer was stopped
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+    
+    /**
+     * @return a copy of the authors found so far, in the order they were 
+     * found
+     */
+    public Set<T> getAuthors() {
+        synchronized (this.authors) {
+            return new LinkedHashSet<T>(this.authors);
+        }
+    }
+    
+}
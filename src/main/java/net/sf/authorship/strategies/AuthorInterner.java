@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.authorship.model.Author;
+
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Interning table of commit authors, keyed on the raw bytes of the author 
+ * name and e-mail. Looking up an identity already seen does not allocate, so 
+ * histories with many commits by few people create only one {@link Author} 
+ * per person.
+ * 
+ * <p>Not thread safe, each thread must use its own interner.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class AuthorInterner {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private Author[] values = new Author[INITIAL_CAPACITY];
+    private final List<Author> authors = new ArrayList<Author>();
+
+    /**
+     * Interns the author of a raw person identity line, as found in commit 
+     * headers: <i>name &lt;email&gt; time zone</i>.
+     * 
+     * @param buffer raw commit
+     * @param ptr position of the first byte of the name
+     * @return the author, or <code>null</code> if the identity is malformed
+     */
+    Author intern(byte[] buffer, int ptr) {
+        final int emailStart = RawParseUtils.nextLF(buffer, ptr, '<');
+        if(emailStart >= buffer.length || buffer[emailStart - 1] != '<') {
+            return null;
+        }
+        final int emailEnd = RawParseUtils.nextLF(buffer, emailStart, '>') - 1;
+        if(emailEnd >= buffer.length || buffer[emailEnd] != '>') {
+            return null;
+        }
+        int nameEnd = emailStart - 1;
+        while(nameEnd > ptr && buffer[nameEnd - 1] == ' ') {
+            --nameEnd;
+        }
+        return this.intern(buffer, ptr, nameEnd, emailStart, emailEnd);
+    }
+
+    /**
+     * @return the interned authors
+     */
+    List<Author> getAuthors() {
+        return authors;
+    }
+
+    private Author intern(byte[] buffer, int nameStart, int nameEnd, int emailStart, int emailEnd) {
+        int hash = 1;
+        for(int i = nameStart ; i < nameEnd ; ++i) {
+            hash = 31 * hash + buffer[i];
+        }
+        hash = 31 * hash;
+        for(int i = emailStart ; i < emailEnd ; ++i) {
+            hash = 31 * hash + buffer[i];
+        }
+        final int mask = this.keys.length - 1;
+        int slot = hash & mask;
+        while(this.keys[slot] != null) {
+            if(this.hashes[slot] == hash && equals(this.keys[slot], buffer, nameStart, nameEnd, emailStart, emailEnd)) {
+                return this.values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int nameLength = nameEnd - nameStart;
+        final byte[] key = new byte[nameLength + 1 + emailEnd - emailStart];
+        System.arraycopy(buffer, nameStart, key, 0, nameLength);
+        System.arraycopy(buffer, emailStart, key, nameLength + 1, emailEnd - emailStart);
+        final Author author = new Author(null, 
+                RawParseUtils.decode(buffer, nameStart, nameEnd), 
+                RawParseUtils.decode(buffer, emailStart, emailEnd), null);
+        this.hashes[slot] = hash;
+        this.keys[slot] = key;
+        this.values[slot] = author;
+        this.authors.add(author);
+        if(this.authors.size() * 4 > this.keys.length * 3) {
+            this.grow();
+        }
+        return author;
+    }
+
+    /**
+     * Compares a key (name, a zero byte and e-mail) with a raw identity.
+     */
+    private static boolean equals(byte[] key, byte[] buffer, int nameStart, int nameEnd, int emailStart, int emailEnd) {
+        final int nameLength = nameEnd - nameStart;
+        if(key.length != nameLength + 1 + emailEnd - emailStart || key[nameLength] != 0) {
+            return false;
+        }
+        for(int i = 0 ; i < nameLength ; ++i) {
+            if(key[i] != buffer[nameStart + i]) {
+                return false;
+            }
+        }
+        for(int i = nameLength + 1, j = emailStart ; j < emailEnd ; ++i, ++j) {
+            if(key[i] != buffer[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        final int[] oldHashes = this.hashes;
+        final byte[][] oldKeys = this.keys;
+        final Author[] oldValues = this.values;
+        final int capacity = oldKeys.length * 2;
+        this.hashes = new int[capacity];
+        this.keys = new byte[capacity][];
+        this.values = new Author[capacity];
+        final int mask = capacity - 1;
+        for(int i = 0 ; i < oldKeys.length ; ++i) {
+            if(oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while(this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.hashes[slot] = oldHashes[i];
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorshipException;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Lines owned by each author, keyed by blob id. A file whose content did not 
+ * change between runs has the same blob id, so it does not need to be blamed 
+ * again. Entries not used during a run are dropped when the cache is stored.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class BlameCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BlameCache.class.getCanonicalName());
+
+    private static final int VERSION = 1;
+
+    private final Map<ObjectId, Map<Author, Integer>> previous;
+    private final ConcurrentMap<ObjectId, Map<Author, Integer>> current = new ConcurrentHashMap<ObjectId, Map<Author, Integer>>();
+
+    private BlameCache(Map<ObjectId, Map<Author, Integer>> previous) {
+        super();
+        this.previous = previous;
+    }
+
+    /**
+     * @param blob blob id
+     * @return the cached lines per author, or <code>null</code>
+     */
+    Map<Author, Integer> get(ObjectId blob) {
+        Map<Author, Integer> lines = this.current.get(blob);
+        if(lines == null) {
+            lines = this.previous.get(blob);
+            if(lines != null) {
+                this.current.put(blob, lines);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @param blob blob id
+     * @param lines lines per author
+     */
+    void put(ObjectId blob, Map<Author, Integer> lines) {
+        this.current.put(blob.copy(), lines);
+    }
+
+    /**
+     * @param file cache file
+     * @return the cache read from the file, or an empty cache if the file does 
+     * not exist or could not be read
+     */
+    static BlameCache load(File file) {
+        final Map<ObjectId, Map<Author, Integer>> entries = new ConcurrentHashMap<ObjectId, Map<Author, Integer>>();
+        if(file == null || !file.isFile()) {
+            return new BlameCache(entries);
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(input.readInt() != VERSION) {
+                return new BlameCache(entries);
+            }
+            final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            final int blobs = input.readInt();
+            for(int i = 0 ; i < blobs ; ++i) {
+                input.readFully(raw);
+                final int authors = input.readInt();
+                final Map<Author, Integer> lines = new LinkedHashMap<Author, Integer>();
+                for(int j = 0 ; j < authors ; ++j) {
+                    final Author author = new Author(null, readString(input), readString(input), null);
+                    lines.put(author, input.readInt());
+                }
+                entries.put(ObjectId.fromRaw(raw), Collections.unmodifiableMap(lines));
+            }
+        } catch (IOException ioe) {
+            LOGGER.warning("Failed to read blame cache ["+file.getAbsolutePath()+"]: " + ioe.getMessage());
+            entries.clear();
+        } finally {
+            closeQuietly(input);
+        }
+        return new BlameCache(entries);
+    }
+
+    /**
+     * Stores the entries used during this run.
+     * 
+     * @param file cache file
+     */
+    void store(File file) throws AuthorshipException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new AuthorshipException("Couldn't create blame cache directory ["+parent.getAbsolutePath()+"]");
+        }
+        final File temp = new File(parent, file.getName() + "." + System.nanoTime() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeInt(this.current.size());
+            final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            for(Map.Entry<ObjectId, Map<Author, Integer>> entry : this.current.entrySet()) {
+                entry.getKey().copyRawTo(raw, 0);
+                output.write(raw);
+                output.writeInt(entry.getValue().size());
+                for(Map.Entry<Author, Integer> lines : entry.getValue().entrySet()) {
+                    writeString(output, lines.getKey().getName());
+                    writeString(output, lines.getKey().getEmail());
+                    output.writeInt(lines.getValue());
+                }
+            }
+            output.close();
+            output = null;
+        } catch (IOException ioe) {
+            closeQuietly(output);
+            temp.delete();
+            throw new AuthorshipException("Failed to write blame cache ["+file.getAbsolutePath()+"]", ioe);
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                temp.delete();
+                throw new AuthorshipException("Failed to write blame cache ["+file.getAbsolutePath()+"]");
+            }
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if(value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                LOGGER.warning(ioe.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import net.sf.authorship.util.AuthorshipException;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Reads the <i>svn:author</i> revision property straight from the 
+ * <i>db/revprops</i> files of a local FSFS repository, one task per shard of 
+ * revisions. Packed revision properties are not read, revisions below 
+ * {@link #getMinUnpackedRevision()} must be read through a session.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class FsfsRevprops {
+
+    private static final Logger LOGGER = Logger.getLogger(FsfsRevprops.class.getCanonicalName());
+
+    private static final String DB_DIR = "db";
+    private static final String FORMAT_FILE = "format";
+    private static final String FS_TYPE_FILE = "fs-type";
+    private static final String REVPROPS_DIR = "revprops";
+    private static final String MIN_UNPACKED_REVPROP_FILE = "min-unpacked-revprop";
+    private static final String CURRENT_FILE = "current";
+    private static final String UUID_FILE = "uuid";
+    private static final String FSFS = "fsfs";
+    private static final String LAYOUT_SHARDED = "layout sharded ";
+    private static final String AUTHOR = "svn:author";
+
+    /**
+     * Revisions per task of linear (not sharded) repositories.
+     */
+    private static final long LINEAR_CHUNK = 1000L;
+
+    private final File db;
+    private final File revprops;
+    private final long shardSize;
+    private final long minUnpacked;
+
+    private FsfsRevprops(File db, File revprops, long shardSize, long minUnpacked) {
+        super();
+        this.db = db;
+        this.revprops = revprops;
+        this.shardSize = shardSize;
+        this.minUnpacked = minUnpacked;
+    }
+
+    /**
+     * @param repository local repository root directory
+     * @return the revision properties of the repository, or <code>null</code> 
+     * if it is not a FSFS repository root with a known layout
+     */
+    static FsfsRevprops open(File repository) {
+        final File db = new File(repository, DB_DIR);
+        final File revprops = new File(db, REVPROPS_DIR);
+        if(!revprops.isDirectory()) {
+            return null;
+        }
+        try {
+            final File fsType = new File(db, FS_TYPE_FILE);
+            if(fsType.isFile() && !FSFS.equals(readFirstLine(fsType))) {
+                return null;
+            }
+            final BufferedReader reader = new BufferedReader(new FileReader(new File(db, FORMAT_FILE)));
+            long shardSize = 0L;
+            try {
+                final int format = Integer.parseInt(StringUtils.trimToEmpty(reader.readLine()));
+                if(format < 1) {
+                    return null;
+                }
+                String line;
+                while((line = reader.readLine()) != null) {
+                    if(line.startsWith(LAYOUT_SHARDED)) {
+                        shardSize = Long.parseLong(line.substring(LAYOUT_SHARDED.length()).trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            long minUnpacked = 0L;
+            final File minUnpackedFile = new File(db, MIN_UNPACKED_REVPROP_FILE);
+            if(minUnpackedFile.isFile()) {
+                minUnpacked = Long.parseLong(readFirstLine(minUnpackedFile));
+            }
+            return new FsfsRevprops(db, revprops, shardSize, minUnpacked);
+        } catch (IOException ioe) {
+            LOGGER.fine("Not a readable FSFS repository ["+repository.getAbsolutePath()+"]: " + ioe.getMessage());
+            return null;
+        } catch (NumberFormatException nfe) {
+            LOGGER.fine("Unknown FSFS format in ["+repository.getAbsolutePath()+"]: " + nfe.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the youngest revision of the repository
+     */
+    long getYoungestRevision() throws AuthorshipException {
+        final File current = new File(this.db, CURRENT_FILE);
+        try {
+            return Long.parseLong(StringUtils.split(readFirstLine(current))[0]);
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to read ["+current.getAbsolutePath()+"]", ioe);
+        } catch (RuntimeException re) {
+            throw new AuthorshipException("Invalid youngest revision in ["+current.getAbsolutePath()+"]", re);
+        }
+    }
+
+    /**
+     * @return the repository UUID
+     */
+    String getUuid() throws AuthorshipException {
+        final File uuid = new File(this.db, UUID_FILE);
+        try {
+            return readFirstLine(uuid);
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to read ["+uuid.getAbsolutePath()+"]", ioe);
+        }
+    }
+
+    /**
+     * @return the first revision whose properties are not packed
+     */
+    long getMinUnpackedRevision() {
+        return minUnpacked;
+    }
+
+    /**
+     * @param start first revision, not packed
+     * @param end last revision, inclusive
+     * @param threads number of shards read concurrently
+     * @return author ids of the revisions, in the order they first appear
+     */
+    Set<String> readAuthors(long start, long end, int threads) throws AuthorshipException {
+        final long chunk = this.shardSize > 0L ? this.shardSize : LINEAR_CHUNK;
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        final List<Future<Set<String>>> results = new ArrayList<Future<Set<String>>>();
+        try {
+            long from = start;
+            while(from <= end) {
+                final long to = Math.min(end, (from / chunk + 1L) * chunk - 1L);
+                results.add(executor.submit(new Shard(from, to)));
+                from = to + 1L;
+            }
+            final Set<String> authorIds = new LinkedHashSet<String>();
+            for(Future<Set<String>> result : results) {
+                authorIds.addAll(result.get());
+            }
+            return authorIds;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while reading revision properties ["+this.revprops.getAbsolutePath()+"]", ie);
+        } catch (ExecutionException ee) {
+            throw new AuthorshipException("Failed to read revision properties ["+this.revprops.getAbsolutePath()+"]: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the properties file of a revision
+     */
+    private File getRevpropsFile(long revision) {
+        if(this.shardSize > 0L) {
+            return new File(new File(this.revprops, Long.toString(revision / this.shardSize)), Long.toString(revision));
+        }
+        return new File(this.revprops, Long.toString(revision));
+    }
+
+    /**
+     * Finds a property value in a serialized hash, made of <i>K length</i>, 
+     * key, <i>V length</i> and value lines, ended by <i>END</i>.
+     * 
+     * @return the value, or <code>null</code> if there is no such property
+     */
+    static String getProperty(byte[] hash, String name) {
+        int ptr = 0;
+        String key = null;
+        while(ptr < hash.length) {
+            final int eol = indexOf(hash, ptr, (byte) '\n');
+            if(eol < 0 || eol - ptr < 2 || hash[ptr + 1] != ' ') {
+                return null;
+            }
+            final byte kind = hash[ptr];
+            if(kind != 'K' && kind != 'V') {
+                return null;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(new String(hash, ptr + 2, eol - ptr - 2, "US-ASCII"));
+            } catch (NumberFormatException nfe) {
+                return null;
+            } catch (UnsupportedEncodingException uee) {
+                throw new AuthorshipException("US-ASCII is not available", uee);
+            }
+            final int valueStart = eol + 1;
+            if(length < 0 || valueStart + length > hash.length) {
+                return null;
+            }
+            final String value = decode(hash, valueStart, length);
+            if(kind == 'K') {
+                key = value;
+            } else if(name.equals(key)) {
+                return value;
+            }
+            ptr = valueStart + length + 1;
+        }
+        return null;
+    }
+
+    private static String decode(byte[] buffer, int start, int length) {
+        try {
+            return new String(buffer, start, length, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new AuthorshipException("UTF-8 is not available", uee);
+        }
+    }
+
+    private static int indexOf(byte[] buffer, int start, byte b) {
+        for(int i = start ; i < buffer.length ; ++i) {
+            if(buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            return StringUtils.trimToEmpty(reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[(int) file.length()];
+            int read = 0;
+            while(read < buffer.length) {
+                final int n = in.read(buffer, read, buffer.length - read);
+                if(n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the authors of a range of revisions of the same shard.
+     */
+    private final class Shard implements Callable<Set<String>> {
+
+        private final long start;
+        private final long end;
+
+        Shard(long start, long end) {
+            super();
+            this.start = start;
+            this.end = end;
+        }
+
+        public Set<String> call() throws IOException {
+            final Set<String> authorIds = new LinkedHashSet<String>();
+            for(long revision = start ; revision <= end ; ++revision) {
+                final String author = getProperty(readFully(getRevpropsFile(revision)), AUTHOR);
+                if(StringUtils.isNotBlank(author)) {
+                    authorIds.add(author);
+                }
+            }
+            return authorIds;
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.model.Ownership;
+import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.Workspace;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+/**
+ * Git strategy that blames every text file of the start revision, and finds 
+ * how many surviving lines each author owns. Files are blamed in parallel, 
+ * and results are cached by blob id so that unchanged files are not blamed 
+ * again in later runs.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class GitBlameStrategy extends GitStrategy {
+
+    private static final  Logger LOGGER = Logger.getLogger(GitBlameStrategy.class.getCanonicalName());
+
+    private String pathPrefix;
+    private File blameCacheFile;
+    private Ownership ownership;
+
+    /**
+     * Git blame strategy that clones the repository into a temporary folder.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param folder local folder for the clone
+     * @param fromRevision revision whose files are blamed
+     * @param gitOptions options for cloning the repository
+     */
+    public GitBlameStrategy(String readOnlyUrl, String folder, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, folder, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * Git blame strategy that clones the repository into a temporary entry of 
+     * the workspace.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param workspace workspace for the clone
+     * @param fromRevision revision whose files are blamed
+     * @param gitOptions options for cloning the repository
+     */
+    public GitBlameStrategy(String readOnlyUrl, Workspace workspace, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, workspace, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * Git blame strategy that reuses a local mirror of the repository.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param mirrorCache local mirrors
+     * @param fromRevision revision whose files are blamed
+     * @param gitOptions options for walking the repository
+     */
+    public GitBlameStrategy(String readOnlyUrl, GitMirrorCache mirrorCache, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, mirrorCache, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * @param pathPrefix only files under this directory, relative to the 
+     * repository root, are blamed
+     */
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * @param blameCacheFile file where blame results are kept between runs, 
+     * or <code>null</code> to always blame all the files
+     */
+    public void setBlameCacheFile(File blameCacheFile) {
+        this.blameCacheFile = blameCacheFile;
+    }
+
+    /**
+     * @return the lines owned by each author per file, once the authors were 
+     * retrieved
+     */
+    public Ownership getOwnership() {
+        return ownership;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.GitStrategy#readAuthors(org.eclipse.jgit.lib.Repository, net.sf.authorship.strategies.AuthorHandler)
+     */
+    @Override
+    protected boolean readAuthors(Repository repository, AuthorHandler<Author> handler) throws AuthorshipException {
+        final ObjectId commitId;
+        final Map<String, ObjectId> blobs;
+        final BlameCache cache = BlameCache.load(this.blameCacheFile);
+        try {
+            commitId = repository.resolve(this.getFromRevision());
+            if(commitId == null) {
+                throw new AuthorshipException("Unknown revision ["+this.getFromRevision()+"] in git repository ["+repository.getDirectory()+"]");
+            }
+            blobs = this.listFiles(repository, commitId, cache);
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to list files of git repository ["+repository.getDirectory()+"]: " + ioe.getMessage(), ioe);
+        }
+
+        final Map<String, Future<Map<Author, Integer>>> results = new LinkedHashMap<String, Future<Map<Author, Integer>>>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.getGitOptions().getThreads()));
+        final Ownership result = new Ownership();
+        try {
+            for(Map.Entry<String, ObjectId> blob : blobs.entrySet()) {
+                final Map<Author, Integer> cached = cache.get(blob.getValue());
+                if(cached != null) {
+                    for(Map.Entry<Author, Integer> lines : cached.entrySet()) {
+                        result.add(blob.getKey(), lines.getKey(), lines.getValue());
+                    }
+                } else {
+                    results.put(blob.getKey(), executor.submit(new Blame(repository, commitId, blob.getKey())));
+                }
+            }
+            LOGGER.fine("Blaming ["+results.size()+"] of ["+blobs.size()+"] files");
+            for(Map.Entry<String, Future<Map<Author, Integer>>> blame : results.entrySet()) {
+                final Map<Author, Integer> lines = blame.getValue().get();
+                cache.put(blobs.get(blame.getKey()), lines);
+                for(Map.Entry<Author, Integer> entry : lines.entrySet()) {
+                    result.add(blame.getKey(), entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while blaming git repository ["+repository.getDirectory()+"]", ie);
+        } catch (ExecutionException ee) {
+            throw new AuthorshipException("Failed to blame git repository ["+repository.getDirectory()+"]: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if(this.blameCacheFile != null) {
+            try {
+                cache.store(this.blameCacheFile);
+            } catch (AuthorshipException ae) {
+                LOGGER.warning(ae.getMessage());
+            }
+        }
+        this.ownership = result;
+        return emit(result.getDirectoryLines(null).keySet(), handler);
+    }
+
+    /**
+     * Lists the files of the commit. Only the blobs missing from the cache 
+     * are opened to check whether they are binary, and binary blobs are 
+     * cached without lines, so that they are not opened again.
+     * 
+     * @return blob id of each text file of the commit, by path
+     */
+    private Map<String, ObjectId> listFiles(Repository repository, ObjectId commitId, BlameCache cache) throws IOException {
+        final Map<String, ObjectId> blobs = new LinkedHashMap<String, ObjectId>();
+        final RevWalk walk = new RevWalk(repository);
+        final ObjectReader reader = repository.newObjectReader();
+        try {
+            final RevCommit commit = walk.parseCommit(commitId);
+            final TreeWalk treeWalk = new TreeWalk(reader);
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            if(StringUtils.isNotBlank(this.pathPrefix)) {
+                treeWalk.setFilter(PathFilter.create(StringUtils.removeEnd(this.pathPrefix, "/")));
+            }
+            while(treeWalk.next()) {
+                if((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+                    // symbolic links and submodules
+                    continue;
+                }
+                final ObjectId blob = treeWalk.getObjectId(0);
+                if(cache.get(blob) != null) {
+                    blobs.put(treeWalk.getPathString(), blob);
+                    continue;
+                }
+                final InputStream content = reader.open(blob).openStream();
+                try {
+                    if(RawText.isBinary(content)) {
+                        cache.put(blob, Collections.<Author, Integer>emptyMap());
+                    } else {
+                        blobs.put(treeWalk.getPathString(), blob);
+                    }
+                } finally {
+                    content.close();
+                }
+            }
+        } finally {
+            reader.release();
+            walk.release();
+        }
+        return blobs;
+    }
+
+    /**
+     * Blames a file, counting the lines of each author.
+     */
+    private static final class Blame implements Callable<Map<Author, Integer>> {
+
+        private final Repository repository;
+        private final ObjectId commitId;
+        private final String path;
+
+        Blame(Repository repository, ObjectId commitId, String path) {
+            this.repository = repository;
+            this.commitId = commitId;
+            this.path = path;
+        }
+
+        public Map<Author, Integer> call() throws IOException {
+            final Map<Author, Integer> lines = new LinkedHashMap<Author, Integer>();
+            final BlameGenerator generator = new BlameGenerator(repository, path);
+            try {
+                generator.push(null, commitId);
+                while(generator.next()) {
+                    final PersonIdent ident = generator.getSourceAuthor();
+                    final Author author = new Author(null, ident.getName(), ident.getEmailAddress(), null);
+                    final Integer count = lines.get(author);
+                    lines.put(author, count == null ? generator.getRegionLength() : count + generator.getRegionLength());
+                }
+            } finally {
+                generator.release();
+            }
+            return lines;
+        }
+    }
+
+}
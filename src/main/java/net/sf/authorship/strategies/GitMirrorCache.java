@@ -0,0 +1,321 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.CacheLock;
+import net.sf.authorship.util.Workspace;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * Local bare mirrors of remote Git repositories. Each mirror is keyed by the 
+ * normalized repository URL, cloned once and then updated with incremental 
+ * fetches. Updates are guarded by a {@link CacheLock}, so that concurrent 
+ * builds can share the same mirror directory. Mirrors are entries of a 
+ * {@link Workspace}, evicted when they are no longer used. Each mirror is 
+ * fetched once per instance, so the strategies sharing an instance during 
+ * a build share the same fetch.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class GitMirrorCache {
+
+    private static final Logger LOGGER = Logger.getLogger(GitMirrorCache.class.getCanonicalName());
+
+    private static final String REMOTE = Constants.DEFAULT_REMOTE_NAME;
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+    private static final String MIRROR_SUFFIX = ".git";
+
+    /**
+     * Refspec mirroring all the remote branches as local branches.
+     */
+    static final RefSpec ALL_BRANCHES = new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*");
+
+    private final Workspace workspace;
+    private final ConcurrentMap<String, FutureTask<Void>> fetches = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+    /**
+     * @param directory base directory of the mirrors, never evicted
+     */
+    public GitMirrorCache(File directory) {
+        this(new Workspace(directory, 0L));
+    }
+
+    /**
+     * @param workspace workspace holding the mirrors
+     */
+    public GitMirrorCache(Workspace workspace) {
+        super();
+        this.workspace = workspace;
+    }
+
+    /**
+     * @return the base directory of the mirrors
+     */
+    public File getDirectory() {
+        return this.workspace.getDirectory();
+    }
+
+    /**
+     * @return the workspace holding the mirrors
+     */
+    public Workspace getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * @param url read only Git repository URL
+     * @return the local directory of the mirror of the given URL
+     */
+    public File getMirrorDirectory(String url) {
+        return new File(this.getDirectory(), getKey(url) + MIRROR_SUFFIX);
+    }
+
+    /**
+     * Clones the repository if there is no mirror for it yet, or fetches the 
+     * new objects otherwise, unless it was already done by this instance. 
+     * The mirror is not evicted until the returned entry is released by the 
+     * caller.
+     * 
+     * @param url read only Git repository URL
+     * @return the workspace entry of the up to date mirror
+     */
+    public Workspace.Entry openMirror(String url) throws AuthorshipException {
+        final Workspace.Entry entry = this.workspace.open(getKey(url) + MIRROR_SUFFIX);
+        try {
+            this.update(url, entry.getDirectory());
+            return entry;
+        } catch (RuntimeException re) {
+            entry.release();
+            throw re;
+        }
+    }
+
+    /**
+     * Fetches a mirror once. Concurrent callers wait for the same fetch, and 
+     * a failed fetch is retried by the next caller.
+     */
+    private void update(final String url, final File mirror) throws AuthorshipException {
+        final String key = getKey(url);
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws AuthorshipException {
+                final CacheLock lock = CacheLock.acquire(new File(getDirectory(), key + LOCK_FILE_SUFFIX));
+                try {
+                    fetch(url, mirror, ALL_BRANCHES);
+                } finally {
+                    lock.release();
+                }
+                return null;
+            }
+        });
+        final FutureTask<Void> existing = this.fetches.putIfAbsent(key, task);
+        if(existing != null) {
+            task = existing;
+        } else {
+            task.run();
+        }
+        try {
+            task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while fetching git repository ["+url+"]", ie);
+        } catch (ExecutionException ee) {
+            this.fetches.remove(key, task);
+            if(ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new AuthorshipException("Failed to fetch git repository ["+url+"]", ee.getCause());
+        }
+    }
+
+    /**
+     * Creates a bare repository, if needed, and fetches the branches matching 
+     * the refspec. No working tree is created, only the objects reachable 
+     * from the fetched branches are transferred.
+     * 
+     * @param url read only Git repository URL
+     * @param mirror local bare repository directory
+     * @param refSpec branches to fetch
+     */
+    static void fetch(String url, File mirror, RefSpec refSpec) throws AuthorshipException {
+        Repository repository = null;
+        try {
+            if(RepositoryCache.FileKey.isGitRepository(mirror, FS.DETECTED)) {
+                LOGGER.fine("Updating bare git repository ["+mirror.getAbsolutePath()+"] of ["+url+"]");
+                repository = RepositoryCache.open(RepositoryCache.FileKey.exact(mirror, FS.DETECTED), true);
+            } else {
+                LOGGER.info("Creating bare git repository ["+mirror.getAbsolutePath()+"] of ["+url+"]");
+                repository = Git.init().setBare(true).setDirectory(mirror).call().getRepository();
+                configureRemote(repository, url, refSpec);
+            }
+            final FetchResult result = new Git(repository).fetch()
+                    .setRemote(REMOTE)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+            updateHead(repository, result);
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to update git mirror ["+mirror.getAbsolutePath()+"] of ["+url+"]", ioe);
+        } catch (URISyntaxException use) {
+            throw new AuthorshipException("Invalid git repository URL ["+url+"]", use);
+        } catch (InvalidRemoteException ire) {
+            throw new AuthorshipException("Failed to fetch git repository ["+url+"]", ire);
+        } catch (JGitInternalException jie) {
+            throw new AuthorshipException("Failed to fetch git repository ["+url+"]", jie);
+        } finally {
+            if(repository != null) {
+                repository.close();
+            }
+        }
+    }
+
+    /**
+     * Configures the remote so that the remote branches are mirrored as local 
+     * branches of the bare repository.
+     */
+    private static void configureRemote(Repository repository, String url, RefSpec refSpec) throws IOException, URISyntaxException {
+        final StoredConfig config = repository.getConfig();
+        final RemoteConfig remote = new RemoteConfig(config, REMOTE);
+        remote.addURI(new URIish(url));
+        remote.addFetchRefSpec(refSpec);
+        remote.update(config);
+        config.save();
+    }
+
+    /**
+     * Points the mirror HEAD to the branch advertised as HEAD by the remote 
+     * repository, so that {@link Constants#HEAD} resolves to the remote 
+     * default branch.
+     */
+    private static void updateHead(Repository repository, FetchResult result) throws IOException {
+        final Ref remoteHead = result.getAdvertisedRef(Constants.HEAD);
+        if(remoteHead == null || remoteHead.getObjectId() == null) {
+            return;
+        }
+        final ObjectId headId = remoteHead.getObjectId();
+        String target = null;
+        for(Map.Entry<String, Ref> entry : repository.getRefDatabase().getRefs(Constants.R_HEADS).entrySet()) {
+            if(headId.equals(entry.getValue().getObjectId())) {
+                target = Constants.R_HEADS + entry.getKey();
+                if(Constants.MASTER.equals(entry.getKey())) {
+                    break;
+                }
+            }
+        }
+        if(target == null) {
+            final Map<String, Ref> heads = repository.getRefDatabase().getRefs(Constants.R_HEADS);
+            if(heads.size() == 1) {
+                target = Constants.R_HEADS + heads.keySet().iterator().next();
+            }
+        }
+        if(target != null) {
+            final Ref head = repository.getRef(Constants.HEAD);
+            if(head == null || !head.isSymbolic() || !target.equals(head.getTarget().getName())) {
+                final RefUpdate update = repository.updateRef(Constants.HEAD);
+                update.disableRefLog();
+                update.link(target);
+            }
+        }
+    }
+
+    /**
+     * Normalizes a Git URL, so that different spellings of the same 
+     * repository share one mirror. The scheme and host are case insensitive,
+     * and trailing slashes and <i>.git</i> suffixes are ignored. The user 
+     * and path keep their case, also in scp-like URLs such as 
+     * <i>git@host:Owner/Repo</i>.
+     * 
+     * @param url Git repository URL
+     * @return normalized URL
+     */
+    static String normalize(String url) {
+        String normalized = StringUtils.trimToEmpty(url);
+        while(normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if(normalized.endsWith(MIRROR_SUFFIX)) {
+            normalized = normalized.substring(0, normalized.length() - MIRROR_SUFFIX.length());
+        }
+        final int schemeEnd = normalized.indexOf("://");
+        final int hostEnd;
+        if(schemeEnd > 0) {
+            final int pathStart = normalized.indexOf('/', schemeEnd + 3);
+            hostEnd = pathStart < 0 ? normalized.length() : pathStart;
+        } else {
+            // scp-like URL, unless the colon is a drive letter or in a path
+            final int colon = normalized.indexOf(':');
+            final int slash = normalized.indexOf('/');
+            hostEnd = colon > 1 && (slash < 0 || colon < slash) ? colon : -1;
+        }
+        if(hostEnd < 0) {
+            return normalized;
+        }
+        final int authorityStart = schemeEnd > 0 ? schemeEnd + 3 : 0;
+        final int at = normalized.lastIndexOf('@', hostEnd - 1);
+        final int hostStart = at >= authorityStart ? at + 1 : authorityStart;
+        return (schemeEnd > 0 ? normalized.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH) : "")
+            + normalized.substring(Math.max(schemeEnd, 0), hostStart)
+            + normalized.substring(hostStart, hostEnd).toLowerCase(Locale.ENGLISH)
+            + normalized.substring(hostEnd);
+    }
+
+    /**
+     * @param url Git repository URL
+     * @return the SHA-1 of the normalized URL, in hexadecimal
+     */
+    static String getKey(String url) {
+        final MessageDigest digest = Constants.newMessageDigest();
+        return ObjectId.fromRaw(digest.digest(Constants.encode(normalize(url)))).name();
+    }
+
+}
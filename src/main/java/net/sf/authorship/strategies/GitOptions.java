@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.Date;
+
+/**
+ * Options for Git strategy for finding authors.
+ * 
+ * <p>In metadata only mode the repository is cloned bare, without a working 
+ * tree and with only the branch being analysed, as only the commit headers are 
+ * needed to find authors. The walk can also be bounded by a date and by a 
+ * maximum number of commits. With more than one thread, whole history walks 
+ * read the commits in parallel, in no particular order.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class GitOptions {
+
+    private boolean metadataOnly;
+    private Date since;
+    private int maxCount;
+    private int threads;
+    private int scanThreads;
+
+    /**
+     * 
+     */
+    public GitOptions() {
+        metadataOnly = true;
+        since = null;
+        maxCount = 0;
+        threads = 1;
+        scanThreads = 1;
+    }
+
+    /**
+     * @param metadataOnly
+     * @param since
+     * @param maxCount
+     */
+    public GitOptions(boolean metadataOnly, Date since, int maxCount) {
+        super();
+        this.metadataOnly = metadataOnly;
+        this.since = since;
+        this.maxCount = maxCount;
+        this.threads = 1;
+        this.scanThreads = 1;
+    }
+
+    /**
+     * @return whether only the objects needed to walk the commits are fetched
+     */
+    public boolean isMetadataOnly() {
+        return metadataOnly;
+    }
+
+    /**
+     * @param metadataOnly
+     *            the metadataOnly to set
+     */
+    public void setMetadataOnly(boolean metadataOnly) {
+        this.metadataOnly = metadataOnly;
+    }
+
+    /**
+     * @return the date of the oldest commit analysed, or <code>null</code>
+     */
+    public Date getSince() {
+        return since;
+    }
+
+    /**
+     * @param since
+     *            the since to set
+     */
+    public void setSince(Date since) {
+        this.since = since;
+    }
+
+    /**
+     * @return the maximum number of commits analysed, or <code>0</code> for 
+     * no limit
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @param maxCount
+     *            the maxCount to set
+     */
+    public void setMaxCount(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * @return the number of threads blaming files
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads
+     *            the threads to set
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of threads reading commits when the whole history 
+     * is analysed. More than one thread only pays off on histories with many 
+     * branches, as a linear history is read one commit at a time.
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * @param scanThreads
+     *            the scanThreads to set
+     */
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.model.PathIndex;
+import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.Workspace;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Git strategy that maintains a {@link PathIndex}: for each directory, the 
+ * authors whose commits changed it. Each commit is diffed against its parent; 
+ * merge commits are skipped, as their changes belong to the merged commits. 
+ * When an index file is set, later runs only index the new commits.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class GitPathIndexStrategy extends GitStrategy {
+
+    private static final  Logger LOGGER = Logger.getLogger(GitPathIndexStrategy.class.getCanonicalName());
+
+    private static final String INDEX_URL = "url";
+    private static final String INDEX_FROM = "fromRevision";
+    private static final String INDEX_TIP = "tip";
+
+    private String pathPrefix;
+    private File indexFile;
+    private PathIndex index;
+
+    /**
+     * Git path index strategy that clones the repository into a temporary 
+     * folder.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param folder local folder for the clone
+     * @param fromRevision revision to start walking from
+     * @param gitOptions options for cloning the repository
+     */
+    public GitPathIndexStrategy(String readOnlyUrl, String folder, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, folder, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * Git path index strategy that clones the repository into a temporary 
+     * entry of the workspace.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param workspace workspace for the clone
+     * @param fromRevision revision to start walking from
+     * @param gitOptions options for cloning the repository
+     */
+    public GitPathIndexStrategy(String readOnlyUrl, Workspace workspace, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, workspace, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * Git path index strategy that reuses a local mirror of the repository.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param mirrorCache local mirrors
+     * @param fromRevision revision to start walking from
+     * @param gitOptions options for walking the repository
+     */
+    public GitPathIndexStrategy(String readOnlyUrl, GitMirrorCache mirrorCache, String fromRevision,
+            GitOptions gitOptions) {
+        super(readOnlyUrl, mirrorCache, fromRevision, null, gitOptions);
+    }
+
+    /**
+     * @param pathPrefix directory, relative to the repository root, whose 
+     * authors are returned by {@link #getAuthors()}
+     */
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * @param indexFile file where the index is kept between runs, or 
+     * <code>null</code> to always index the whole history
+     */
+    public void setIndexFile(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * @return the index, once the authors were retrieved
+     */
+    public PathIndex getIndex() {
+        return index;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.GitStrategy#readAuthors(org.eclipse.jgit.lib.Repository, net.sf.authorship.strategies.AuthorHandler)
+     */
+    @Override
+    protected boolean readAuthors(Repository repository, AuthorHandler<Author> handler) throws AuthorshipException {
+        final RevWalk walk = new RevWalk(repository);
+        final ObjectReader reader = repository.newObjectReader();
+        final ObjectId revId;
+        PathIndex pathIndex = PathIndex.load(this.indexFile);
+        try {
+            revId = repository.resolve(this.getFromRevision());
+            if(revId == null) {
+                throw new AuthorshipException("Unknown revision ["+this.getFromRevision()+"] in git repository ["+repository.getDirectory()+"]");
+            }
+            if(pathIndex != null && (!this.getReadOnlyUrl().equals(pathIndex.getMetadata(INDEX_URL)) 
+                    || !this.getFromRevision().equals(pathIndex.getMetadata(INDEX_FROM))
+                    || !ObjectId.isId(pathIndex.getMetadata(INDEX_TIP)))) {
+                pathIndex = null;
+            }
+            if(pathIndex != null) {
+                final ObjectId tip = ObjectId.fromString(pathIndex.getMetadata(INDEX_TIP));
+                if(this.isAncestor(repository, tip, revId)) {
+                    walk.markUninteresting(walk.parseCommit(tip));
+                } else {
+                    LOGGER.info("Indexed tip ["+tip.name()+"] is not an ancestor of ["+revId.name()+"], history was rewritten. Indexing the whole history.");
+                    pathIndex = null;
+                }
+            }
+            if(pathIndex == null) {
+                pathIndex = new PathIndex();
+                pathIndex.setMetadata(INDEX_URL, this.getReadOnlyUrl());
+                pathIndex.setMetadata(INDEX_FROM, this.getFromRevision());
+            }
+            walk.markStart(walk.parseCommit(revId));
+            walk.setRetainBody(false);
+            walk.setRevFilter(new Indexer(pathIndex, new TreeWalk(reader)));
+            while(walk.next() != null) {
+                // the indexer excludes all commits
+            }
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to index revisions from git repository ["+repository.getDirectory()+"]: " + ioe.getMessage(), ioe);
+        } finally {
+            walk.dispose();
+            reader.release();
+        }
+
+        pathIndex.setMetadata(INDEX_TIP, revId.name());
+        if(this.indexFile != null) {
+            try {
+                pathIndex.store(this.indexFile);
+            } catch (AuthorshipException ae) {
+                LOGGER.warning(ae.getMessage());
+            }
+        }
+        this.index = pathIndex;
+        return emit(pathIndex.getAuthors(this.pathPrefix).keySet(), handler);
+    }
+
+    /**
+     * Filter adding the changed paths of each commit to the index, while 
+     * the commit body is available. It excludes every commit.
+     */
+    private static final class Indexer extends RevFilter {
+
+        private final PathIndex index;
+        private final TreeWalk treeWalk;
+        private final AuthorInterner interner = new AuthorInterner();
+
+        Indexer(PathIndex index, TreeWalk treeWalk) {
+            this.index = index;
+            this.treeWalk = treeWalk;
+            this.treeWalk.setRecursive(true);
+            this.treeWalk.setFilter(TreeFilter.ANY_DIFF);
+        }
+
+        @Override
+        public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+            if(commit.getParentCount() > 1) {
+                return false;
+            }
+            final byte[] buffer = commit.getRawBuffer();
+            final int ptr = RawParseUtils.author(buffer, 0);
+            final Author author = ptr >= 0 ? interner.intern(buffer, ptr) : null;
+            if(author == null) {
+                return false;
+            }
+            final int authorId = index.startCommit(author);
+            treeWalk.reset();
+            if(commit.getParentCount() == 0) {
+                treeWalk.addTree(new EmptyTreeIterator());
+            } else {
+                // parents are parsed by the walk only after the filter
+                final RevCommit parent = commit.getParent(0);
+                walker.parseHeaders(parent);
+                treeWalk.addTree(parent.getTree());
+            }
+            treeWalk.addTree(commit.getTree());
+            while(treeWalk.next()) {
+                index.addPath(authorId, treeWalk.getPathString());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean requiresCommitBody() {
+            return true;
+        }
+
+        @Override
+        public RevFilter clone() {
+            return this;
+        }
+    }
+
+}
@@ -25,21 +25,34 @@ package net.sf.authorship.strategies;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorCache;
 import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.Workspace;
 
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.MaxCountRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.util.RawParseUtils;
 import org.eclipse.jgit.util.FS;
 
 /**
@@ -47,100 +60,514 @@ import org.eclipse.jgit.util.FS;
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 0.1
  */
-public class GitStrategy implements AuthorshipStrategy<Author> {
+public class GitStrategy extends AbstractAuthorshipStrategy<Author> {
 
     private String readOnlyUrl;
     private String folder;
+    private Workspace workspace;
+    private GitMirrorCache mirrorCache;
     private String fromRevision;
     private String toRevision;
+    private GitOptions gitOptions;
+    private File cacheFile;
+    private File localDirectory;
     
     private static final  Logger LOGGER = Logger.getLogger(GitStrategy.class.getCanonicalName());
 
+    private static final String SHALLOW_FILE = "shallow";
+
+    private static final String CACHE_URL = "url";
+    private static final String CACHE_FROM = "fromRevision";
+    private static final String CACHE_TO = "toRevision";
+    private static final String CACHE_SINCE = "since";
+    private static final String CACHE_TIP = "tip";
+
+    /**
+     * Git strategy that clones the repository into a temporary folder, 
+     * deleted after the authors are retrieved.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param folder local folder for the clone
+     * @param fromRevision revision to start walking from
+     * @param toRevision revision where the walk stops (exclusive)
+     */
     public GitStrategy(String readOnlyUrl, String folder, String fromRevision,
             String toRevision) {
+        this(readOnlyUrl, folder, fromRevision, toRevision, new GitOptions());
+    }
+
+    /**
+     * Git strategy that clones the repository into a temporary folder, 
+     * deleted after the authors are retrieved.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param folder local folder for the clone
+     * @param fromRevision revision to start walking from
+     * @param toRevision revision where the walk stops (exclusive)
+     * @param gitOptions options for cloning and walking the repository
+     */
+    public GitStrategy(String readOnlyUrl, String folder, String fromRevision,
+            String toRevision, GitOptions gitOptions) {
         super();
         this.readOnlyUrl = readOnlyUrl;
         this.folder = folder;
         this.fromRevision = fromRevision;
         this.toRevision = toRevision;
+        this.gitOptions = gitOptions;
+    }
+
+    /**
+     * Git strategy that clones the repository into a temporary entry of the 
+     * workspace, deleted after the authors are retrieved.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param workspace workspace for the clone
+     * @param fromRevision revision to start walking from
+     * @param toRevision revision where the walk stops (exclusive)
+     * @param gitOptions options for cloning and walking the repository
+     */
+    public GitStrategy(String readOnlyUrl, Workspace workspace, String fromRevision,
+            String toRevision, GitOptions gitOptions) {
+        super();
+        this.readOnlyUrl = readOnlyUrl;
+        this.workspace = workspace;
+        this.fromRevision = fromRevision;
+        this.toRevision = toRevision;
+        this.gitOptions = gitOptions;
+    }
+
+    /**
+     * Git strategy that reuses a local mirror of the repository, updated 
+     * with an incremental fetch.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param mirrorCache local mirrors
+     * @param fromRevision revision to start walking from
+     * @param toRevision revision where the walk stops (exclusive)
+     */
+    public GitStrategy(String readOnlyUrl, GitMirrorCache mirrorCache, String fromRevision,
+            String toRevision) {
+        this(readOnlyUrl, mirrorCache, fromRevision, toRevision, new GitOptions());
+    }
+
+    /**
+     * Git strategy that reuses a local mirror of the repository, updated 
+     * with an incremental fetch. Mirrors are always bare, so only the walk 
+     * bounds of the options apply.
+     * 
+     * @param readOnlyUrl read only Git repository URL
+     * @param mirrorCache local mirrors
+     * @param fromRevision revision to start walking from
+     * @param toRevision revision where the walk stops (exclusive)
+     * @param gitOptions options for walking the repository
+     */
+    public GitStrategy(String readOnlyUrl, GitMirrorCache mirrorCache, String fromRevision,
+            String toRevision, GitOptions gitOptions) {
+        super();
+        this.readOnlyUrl = readOnlyUrl;
+        this.mirrorCache = mirrorCache;
+        this.fromRevision = fromRevision;
+        this.toRevision = toRevision;
+        this.gitOptions = gitOptions;
+    }
+
+    /**
+     * @return read only Git repository URL
+     */
+    protected String getReadOnlyUrl() {
+        return this.readOnlyUrl;
+    }
+
+    /**
+     * @return the revision to start walking from
+     */
+    protected String getFromRevision() {
+        return StringUtils.isBlank(this.fromRevision) ? Constants.HEAD : this.fromRevision;
+    }
+
+    /**
+     * @return options for cloning and walking the repository
+     */
+    protected GitOptions getGitOptions() {
+        return this.gitOptions;
+    }
+
+    /**
+     * @param cacheFile file where the authors and the walked tip are kept 
+     * between runs, or <code>null</code> to always walk the whole history
+     */
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @param localDirectory directory inside a local Git working tree (e.g. 
+     * the project base directory). When it holds the whole history, the 
+     * authors are read from it and the remote repository is not used.
+     */
+    public void setLocalDirectory(File localDirectory) {
+        this.localDirectory = localDirectory;
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see net.sf.authorship.strategies.AuthorshipStrategy#getAuthors()
+     * @see net.sf.authorship.strategies.StreamingAuthorshipStrategy#readAuthors(net.sf.authorship.strategies.AuthorHandler)
      */
-    public Set<Author> getAuthors() throws AuthorshipException {
+    public boolean readAuthors(AuthorHandler<Author> authorHandler) throws AuthorshipException {
+        // a failed source may have emitted some authors before the fallback
+        final AuthorHandler<Author> handler = distinct(authorHandler);
+        final File gitDir = this.findLocalRepository();
+        if(gitDir != null) {
+            try {
+                final Repository repository = RepositoryCache.open(
+                        RepositoryCache.FileKey.exact(gitDir, FS.DETECTED), true);
+                try {
+                    return this.readAuthors(repository, handler);
+                } finally {
+                    repository.close();
+                }
+            } catch (IOException ioe) {
+                LOGGER.warning("Failed to open local git repository ["+gitDir.getAbsolutePath()+"], using ["+this.readOnlyUrl+"]: " + ioe.getMessage());
+            } catch (AuthorshipException ae) {
+                LOGGER.warning("Failed to read authors from local git repository ["+gitDir.getAbsolutePath()+"], using ["+this.readOnlyUrl+"]: " + ae.getMessage());
+            }
+        }
 
+        if(this.mirrorCache != null) {
+            final Workspace.Entry mirror = this.mirrorCache.openMirror(this.readOnlyUrl);
+            try {
+                return this.readAuthors(mirror.getDirectory(), handler);
+            } finally {
+                mirror.release();
+            }
+        }
+
+        final Workspace.Entry entry = this.workspace != null ? this.workspace.createTemporary("git") : null;
+        final File directory = entry != null ? entry.getDirectory() : new File(this.folder);
+        try {
+            try {
+                this.cloneRepository(this.readOnlyUrl, directory);
+            } catch (IOException ioe) {
+                throw new AuthorshipException("Failed to clone git repository ["
+                        + this.readOnlyUrl + "]", ioe);
+            }
+            return this.readAuthors(directory, handler);
+        } finally {
+            if(entry != null) {
+                entry.delete();
+            } else {
+                Workspace.delete(directory);
+            }
+        }
+    }
+
+    /**
+     * Opens a repository cloned or mirrored into a local directory and walks 
+     * its commits.
+     */
+    private boolean readAuthors(File directory, AuthorHandler<Author> handler) throws AuthorshipException {
+        final Repository repository;
         try {
-            this.cloneRepository(this.readOnlyUrl, this.folder);
+            repository = RepositoryCache.open(
+                    RepositoryCache.FileKey.lenient(directory, FS.DETECTED),
+                    true);
         } catch (IOException ioe) {
-            throw new AuthorshipException("Failed to clone git repository ["
-                    + this.readOnlyUrl + "]", ioe);
+            throw new AuthorshipException("Failed to open git repository ["
+                    + this.readOnlyUrl + "] cloned into local repository ["
+                    + directory.getAbsolutePath() + "]", ioe);
         }
-        
+        try {
+            return this.readAuthors(repository, handler);
+        } finally {
+            repository.close();
+        }
+    }
+
+    /**
+     * Walks the commits of a local repository. When a cache file is set and 
+     * the cached tip is still an ancestor of the start revision, only the 
+     * commits added since the previous run are walked. The cache is only 
+     * updated if the handler did not stop the walk.
+     * 
+     * @param repository local repository
+     * @param handler receives the authors of the commits
+     * @return <code>false</code> if the handler stopped the walk
+     */
+    protected boolean readAuthors(Repository repository, AuthorHandler<Author> handler) throws AuthorshipException {
         final Set<Author> authorEmails = new HashSet<Author>();
-        final File directory = new File(this.folder);
+        final RevWalk walk;
+        final ObjectId revId;
         try {
-            final Repository repository;
-            try {
-                repository = RepositoryCache.open(
-                        RepositoryCache.FileKey.lenient(directory, FS.DETECTED),
-                        true);
-            } catch (IOException ioe) {
-                throw new AuthorshipException("Failed to open git repository ["
-                        + this.readOnlyUrl + "] cloned into local repository ["
-                        + this.folder + "]", ioe);
+            walk = new RevWalk(repository);
+            if(StringUtils.isBlank(this.fromRevision)) {
+                this.fromRevision = Constants.HEAD;
             }
-            
-            final RevWalk walk;
-            try {
-                walk = new RevWalk(repository);
-                if(StringUtils.isNotBlank(this.fromRevision)) {
-                    this.fromRevision = Constants.HEAD;
+            revId = repository.resolve(this.fromRevision);
+            if(revId == null) {
+                throw new AuthorshipException("Unknown revision ["+this.fromRevision+"] in git repository ["+repository.getDirectory()+"]");
+            }
+            boolean incremental = false;
+            final AuthorCache cache = this.loadCache();
+            if(cache != null) {
+                final ObjectId cachedTip = ObjectId.fromString(cache.getMetadata(CACHE_TIP));
+                if(cachedTip.equals(revId)) {
+                    LOGGER.fine("No new commits since ["+cachedTip.name()+"]");
+                    walk.release();
+                    return emit(cache.getAuthors(), handler);
                 }
-                ObjectId revId = repository.resolve(this.fromRevision);
-                RevCommit root = walk.parseCommit(revId);
-                walk.markStart(root);
-                if(StringUtils.isNotBlank(this.toRevision)) {
-                    ObjectId to = repository.resolve(this.toRevision);
-                    RevCommit end = walk.parseCommit(to);
-                    walk.markUninteresting(end);
+                if(this.isAncestor(repository, cachedTip, revId)) {
+                    LOGGER.fine("Walking commits from ["+revId.name()+"] to cached tip ["+cachedTip.name()+"]");
+                    authorEmails.addAll(cache.getAuthors());
+                    if(!emit(authorEmails, handler)) {
+                        walk.release();
+                        return false;
+                    }
+                    walk.markUninteresting(walk.parseCommit(cachedTip));
+                    incremental = true;
+                } else {
+                    LOGGER.info("Cached tip ["+cachedTip.name()+"] is not an ancestor of ["+revId.name()+"], history was rewritten. Walking the whole history.");
                 }
-            } catch (IOException ioe) {
-                throw new AuthorshipException("Failed to analyse revisions from git repository ["+this.folder+"]: " + ioe.getMessage(), ioe);
             }
-            
-            for (RevCommit commit : walk) {
-                Author author = new Author(null, commit.getAuthorIdent().getName(), commit.getAuthorIdent().getEmailAddress(), null);
-                authorEmails.add(author);
+            if(!incremental && StringUtils.isBlank(this.toRevision) 
+                    && this.gitOptions.getMaxCount() <= 0 && this.gitOptions.getScanThreads() > 1) {
+                walk.release();
+                final long since = this.gitOptions.getSince() == null ? 0L : this.gitOptions.getSince().getTime() / 1000L;
+                // workers do not share a thread with the handler, so the 
+                // authors are emitted once the scan is complete
+                authorEmails.addAll(new ParallelCommitScanner(repository, this.gitOptions.getScanThreads(), since)
+                    .scan(Collections.singleton(revId)));
+                this.storeCache(revId, authorEmails);
+                return emit(authorEmails, handler);
+            }
+            RevCommit root = walk.parseCommit(revId);
+            walk.markStart(root);
+            if(StringUtils.isNotBlank(this.toRevision)) {
+                ObjectId to = repository.resolve(this.toRevision);
+                RevCommit end = walk.parseCommit(to);
+                walk.markUninteresting(end);
             }
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to analyse revisions from git repository ["+repository.getDirectory()+"]: " + ioe.getMessage(), ioe);
+        }
+        
+        // authors are collected by the filter while the commit body is still 
+        // available, so that the walk does not need to retain the bodies
+        final AuthorCollector collector = new AuthorCollector(handler);
+        walk.setRetainBody(false);
+        walk.setRevFilter(this.getRevFilter(collector));
+        try {
+            while(walk.next() != null) {
+                // the collector excludes all commits
+            }
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to analyse revisions from git repository ["+repository.getDirectory()+"]: " + ioe.getMessage(), ioe);
+        } finally {
             walk.dispose();
+        }
+        if(collector.isStopped()) {
+            return false;
+        }
+        authorEmails.addAll(collector.getAuthors());
+
+        this.storeCache(revId, authorEmails);
+        return true;
+    }
+
+    /**
+     * Finds the Git repository enclosing the local directory. Shallow 
+     * repositories are ignored, as they do not hold the whole history.
+     * 
+     * @return the local <i>.git</i> directory, or <code>null</code>
+     */
+    private File findLocalRepository() {
+        if(this.localDirectory == null) {
+            return null;
+        }
+        final File gitDir = new FileRepositoryBuilder().findGitDir(this.localDirectory).getGitDir();
+        if(gitDir == null) {
+            LOGGER.fine("No git repository found in ["+this.localDirectory.getAbsolutePath()+"] or its parents");
+            return null;
+        }
+        if(new File(gitDir, SHALLOW_FILE).isFile()) {
+            LOGGER.info("Local git repository ["+gitDir.getAbsolutePath()+"] is shallow, using ["+this.readOnlyUrl+"]");
+            return null;
+        }
+        return gitDir;
+    }
+
+    /**
+     * @return whether the commit <code>ancestor</code> exists and is reachable 
+     * from <code>descendant</code>
+     */
+    protected boolean isAncestor(Repository repository, ObjectId ancestor, ObjectId descendant) throws IOException {
+        if(!repository.hasObject(ancestor)) {
+            return false;
+        }
+        final RevWalk walk = new RevWalk(repository);
+        try {
+            return walk.isMergedInto(walk.parseCommit(ancestor), walk.parseCommit(descendant));
         } finally {
-            try {
-                if(!directory.delete()) {
-                    directory.deleteOnExit();
-                }
-            } catch (RuntimeException re) {
-                LOGGER.warning(re.getMessage());
-            }
+            walk.release();
+        }
+    }
+
+    /**
+     * @return the cached authors of a previous run with the same settings, or 
+     * <code>null</code>
+     */
+    private AuthorCache loadCache() {
+        if(this.cacheFile == null || this.gitOptions.getMaxCount() > 0) {
+            return null;
+        }
+        final AuthorCache cache = AuthorCache.load(this.cacheFile);
+        if(cache == null || !ObjectId.isId(cache.getMetadata(CACHE_TIP))) {
+            return null;
         }
+        final String since = this.gitOptions.getSince() == null ? null : Long.toString(this.gitOptions.getSince().getTime());
+        if(!cache.matches(CACHE_URL, this.readOnlyUrl) || !cache.matches(CACHE_FROM, this.fromRevision) 
+                || !cache.matches(CACHE_TO, this.toRevision) || !cache.matches(CACHE_SINCE, since)) {
+            LOGGER.fine("Ignoring authorship cache ["+this.cacheFile.getAbsolutePath()+"] created with different settings");
+            return null;
+        }
+        return cache;
+    }
 
-        return authorEmails;
+    /**
+     * Stores the authors found along with the tip of the walk.
+     */
+    private void storeCache(ObjectId tip, Set<Author> authors) {
+        if(this.cacheFile == null || this.gitOptions.getMaxCount() > 0) {
+            return;
+        }
+        final AuthorCache cache = new AuthorCache();
+        cache.setMetadata(CACHE_URL, this.readOnlyUrl);
+        cache.setMetadata(CACHE_FROM, this.fromRevision);
+        cache.setMetadata(CACHE_TO, this.toRevision);
+        cache.setMetadata(CACHE_SINCE, this.gitOptions.getSince() == null ? null : Long.toString(this.gitOptions.getSince().getTime()));
+        cache.setMetadata(CACHE_TIP, tip.name());
+        cache.getAuthors().addAll(authors);
+        try {
+            cache.store(this.cacheFile);
+        } catch (AuthorshipException ae) {
+            LOGGER.warning(ae.getMessage());
+        }
     }
 
     /**
-     * Clones remote repository into local folder.
+     * @param collector filter collecting the authors, always the last one
+     * @return filter bounding the walk by date and number of commits
+     */
+    private RevFilter getRevFilter(RevFilter collector) {
+        final List<RevFilter> filters = new ArrayList<RevFilter>();
+        if(this.gitOptions.getSince() != null) {
+            filters.add(CommitTimeRevFilter.after(this.gitOptions.getSince()));
+        }
+        if(this.gitOptions.getMaxCount() > 0) {
+            filters.add(MaxCountRevFilter.create(this.gitOptions.getMaxCount()));
+        }
+        if(filters.isEmpty()) {
+            return collector;
+        }
+        filters.add(collector);
+        return AndRevFilter.create(filters);
+    }
+
+    /**
+     * Clones remote repository into local folder. In metadata only mode the 
+     * clone is bare, and when the walk starts from a branch only that branch 
+     * is fetched.
      * 
      * @param readOnlyUrl
      *            read only Git repository URL.
-     * @param folder
-     *            local repository folder.
+     * @param directory
+     *            local repository directory.
      */
-    private void cloneRepository(String readOnlyUrl, String folder)
+    private void cloneRepository(String readOnlyUrl, File directory)
             throws IOException {
-        Git.cloneRepository().setURI(readOnlyUrl)
-                .setDirectory(new File(folder)).call();
+        if(this.gitOptions.isMetadataOnly()) {
+            final String branch = this.getBranch();
+            final RefSpec refSpec = branch != null ? new RefSpec("+" + branch + ":" + branch) : GitMirrorCache.ALL_BRANCHES;
+            GitMirrorCache.fetch(readOnlyUrl, directory, refSpec);
+        } else {
+            Git.cloneRepository().setURI(readOnlyUrl)
+                .setDirectory(directory).call().getRepository().close();
+        }
+    }
+
+    /**
+     * @return the full name of the branch the walk starts from, or 
+     * <code>null</code> if it is not a branch name
+     */
+    private String getBranch() {
+        if(StringUtils.isBlank(this.fromRevision) || Constants.HEAD.equals(this.fromRevision)) {
+            return null;
+        }
+        if(this.fromRevision.startsWith(Constants.R_HEADS)) {
+            return this.fromRevision;
+        }
+        if(this.fromRevision.startsWith(Constants.R_REFS) || ObjectId.isId(this.fromRevision) 
+                || !Repository.isValidRefName(Constants.R_HEADS + this.fromRevision)) {
+            return null;
+        }
+        return Constants.R_HEADS + this.fromRevision;
+    }
+
+    /**
+     * Filter reading the author of each commit from its raw buffer, through 
+     * an {@link AuthorInterner}, and passing new authors to the handler. It 
+     * excludes every commit, so the walk keeps no commit for output, and 
+     * stops the walk when the handler asks to.
+     */
+    private static final class AuthorCollector extends RevFilter {
+
+        private final AuthorInterner interner = new AuthorInterner();
+        private final AuthorHandler<Author> handler;
+        private boolean stopped;
+
+        AuthorCollector(AuthorHandler<Author> handler) {
+            super();
+            this.handler = handler;
+        }
+
+        /**
+         * @return the authors of the commits seen by this filter
+         */
+        List<Author> getAuthors() {
+            return interner.getAuthors();
+        }
+
+        /**
+         * @return whether the handler stopped the walk
+         */
+        boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public boolean include(RevWalk walker, RevCommit commit) {
+            final byte[] buffer = commit.getRawBuffer();
+            final int author = RawParseUtils.author(buffer, 0);
+            if(author >= 0) {
+                final int count = interner.getAuthors().size();
+                final Author interned = interner.intern(buffer, author);
+                if(interner.getAuthors().size() > count && !handler.handleAuthor(interned)) {
+                    stopped = true;
+                    throw StopWalkException.INSTANCE;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean requiresCommitBody() {
+            return true;
+        }
+
+        @Override
+        public RevFilter clone() {
+            return this;
+        }
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.sf.authorship.model.Author;
+
+/**
+ * Extracts the <i>@author</i> tags of Javadoc style comments, used by Java, 
+ * Groovy, Scala, Kotlin and JavaScript among others. Only the lines 
+ * containing the <i>@author</i> bytes are decoded and parsed. Unless a full 
+ * scan is requested, the file is read only up to its first declaration 
+ * keyword, such as <i>class</i>, found outside comments, where the header 
+ * comment ends.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class JavadocExtractor extends LineExtractor {
+
+    private static final Pattern JAVA_AUTHOR_TAG_REGEX = Pattern.compile("\\s?\\*\\s?@author\\s+(.*)");
+    
+    private static final byte[] AUTHOR_TAG = ascii("@author");
+    
+    private final byte[][] keywords;
+    
+    /**
+     * @param keywords keywords declaring the types (or functions) of the 
+     * language, ending the header of a source
+     */
+    public JavadocExtractor(String... keywords) {
+        super();
+        this.keywords = new byte[keywords.length][];
+        for(int i = 0 ; i < keywords.length ; ++i) {
+            this.keywords[i] = ascii(keywords[i]);
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.LineExtractor#newLineHandler(java.nio.charset.Charset, boolean, java.util.List)
+     */
+    @Override
+    protected LineHandler newLineHandler(final Charset charset, final boolean fullScan, final List<Author> authors) {
+        return new LineHandler() {
+            private boolean inComment = false;
+            
+            public boolean line(byte[] bytes, int start, int end) {
+                if(indexOf(bytes, start, end, AUTHOR_TAG) >= 0) {
+                    addAuthor(JAVA_AUTHOR_TAG_REGEX, false, bytes, start, end, charset, authors);
+                }
+                return fullScan || !this.isDeclaration(bytes, start, end);
+            }
+            
+            /**
+             * Updates the block comment state and tells whether the code of 
+             * the line, outside comments, has a declaration keyword.
+             */
+            private boolean isDeclaration(byte[] bytes, int start, int end) {
+                for(int i = start ; i < end ; ++i) {
+                    if(this.inComment) {
+                        if(bytes[i] == '*' && i + 1 < end && bytes[i + 1] == '/') {
+                            this.inComment = false;
+                            ++i;
+                        }
+                    } else if(bytes[i] == '/' && i + 1 < end && bytes[i + 1] == '*') {
+                        this.inComment = true;
+                        ++i;
+                    } else if(bytes[i] == '/' && i + 1 < end && bytes[i + 1] == '/') {
+                        break;
+                    } else if(i == start || bytes[i - 1] <= ' ' || bytes[i - 1] == '@') {
+                        for(byte[] keyword : keywords) {
+                            if(isWord(bytes, i, end, keyword)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * @return whether the keyword starts at the offset and is followed by a 
+     * separator
+     */
+    private static boolean isWord(byte[] bytes, int offset, int end, byte[] keyword) {
+        if(offset + keyword.length > end) {
+            return false;
+        }
+        for(int i = 0 ; i < keyword.length ; ++i) {
+            if(bytes[offset + i] != keyword[i]) {
+                return false;
+            }
+        }
+        if(offset + keyword.length == end) {
+            return true;
+        }
+        final byte next = bytes[offset + keyword.length];
+        return next <= ' ' || next == '{' || next == '<' || next == '(';
+    }
+    
+}
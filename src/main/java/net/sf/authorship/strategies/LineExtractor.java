@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorUtil;
+
+/**
+ * Base of the extractors of line oriented sources. Files are read as bytes, 
+ * and the lines are handed over as bytes too, so that extractors can search 
+ * for their tags without decoding every line. Charsets that do not encode 
+ * ASCII as ASCII, such as UTF-16, are transcoded to UTF-8 first.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public abstract class LineExtractor implements AuthorExtractor {
+
+    private static final int BUFFER_SIZE = 8192;
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private static final String ASCII_PROBE = "@author<>/*!-\r\n\t abcdefghijklmnopqrstuvwxyz";
+    
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.AuthorExtractor#extract(java.io.File, java.nio.charset.Charset, boolean, java.util.List)
+     */
+    public void extract(File file, Charset charset, boolean fullScan, List<Author> authors) throws IOException {
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            final FileChannel channel = input.getChannel();
+            if(!Arrays.equals(ASCII_PROBE.getBytes(charset.name()), ascii(ASCII_PROBE))) {
+                this.extractTranscoded(channel, charset, fullScan, authors);
+                return;
+            }
+            final LineHandler handler = this.newLineHandler(charset, fullScan, authors);
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int length = 0;
+            int read;
+            while((read = channel.read(ByteBuffer.wrap(bytes, length, bytes.length - length))) != -1) {
+                length += read;
+                final int consumed = scan(handler, bytes, length, false);
+                if(consumed < 0) {
+                    return;
+                }
+                System.arraycopy(bytes, consumed, bytes, 0, length - consumed);
+                length -= consumed;
+                if(length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+            }
+            scan(handler, bytes, length, true);
+        } finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * @param charset encoding of the lines
+     * @param fullScan whether to read the whole source
+     * @param authors receives the authors
+     * @return a handler for the lines of one file
+     */
+    protected abstract LineHandler newLineHandler(Charset charset, boolean fullScan, List<Author> authors);
+    
+    /**
+     * Receives the lines of one file, without line terminators.
+     */
+    protected interface LineHandler {
+        
+        /**
+         * @param bytes buffer
+         * @param start start of the line
+         * @param end end of the line, exclusive
+         * @return <code>false</code> to stop reading the file
+         */
+        boolean line(byte[] bytes, int start, int end);
+        
+    }
+    
+    /**
+     * Decodes the whole file and scans it as UTF-8.
+     */
+    private void extractTranscoded(FileChannel channel, Charset charset, boolean fullScan, List<Author> authors) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while(channel.read(buffer) != -1) {
+            output.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        final byte[] bytes = new String(output.toByteArray(), charset.name()).getBytes(UTF8.name());
+        scan(this.newLineHandler(UTF8, fullScan, authors), bytes, bytes.length, true);
+    }
+    
+    /**
+     * Hands over the complete lines of the buffer.
+     * 
+     * @param handler receives the lines
+     * @param bytes buffer
+     * @param length bytes in the buffer
+     * @param last whether the trailing bytes are the last line
+     * @return number of bytes consumed, or <code>-1</code> if the handler 
+     * stopped
+     */
+    private static int scan(LineHandler handler, byte[] bytes, int length, boolean last) {
+        int start = 0;
+        while(start < length) {
+            int end = start;
+            while(end < length && bytes[end] != '\n') {
+                ++end;
+            }
+            if(end == length && !last) {
+                break;
+            }
+            final int lineEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            if(!handler.line(bytes, start, lineEnd)) {
+                return -1;
+            }
+            start = end + 1;
+        }
+        return Math.min(start, length);
+    }
+    
+    /**
+     * Decodes a line and adds the author of the first group of the pattern, 
+     * if the pattern matches and the author is valid.
+     * 
+     * @param pattern tag pattern
+     * @param find whether to find the pattern anywhere in the line, instead 
+     * of at its start
+     */
+    protected static void addAuthor(Pattern pattern, boolean find, byte[] bytes, int start, int end, Charset charset, List<Author> authors) {
+        final Matcher matcher = pattern.matcher(new String(bytes, start, end - start, charset));
+        if(!find) {
+            if(matcher.lookingAt()) {
+                addAuthor(matcher.group(1), authors);
+            }
+            return;
+        }
+        while(matcher.find()) {
+            addAuthor(matcher.group(1), authors);
+        }
+    }
+    
+    /**
+     * Adds the author of a tag value, if it is valid.
+     */
+    protected static void addAuthor(String tagValue, List<Author> authors) {
+        final Author author = AuthorUtil.getAuthorFromAuthorJavadocAnnotation(tagValue);
+        if(author != null && author.isValid()) {
+            authors.add(author);
+        }
+    }
+    
+    /**
+     * @return the index of the target in the line, or <code>-1</code>
+     */
+    protected static int indexOf(byte[] bytes, int start, int end, byte[] target) {
+        final int last = end - target.length;
+        outer:
+        for(int i = start ; i <= last ; ++i) {
+            for(int j = 0 ; j < target.length ; ++j) {
+                if(bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+    
+    protected static byte[] ascii(String value) {
+        try {
+            return value.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+    
+}
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorshipException;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Finds the authors of all the commits reachable from a set of commits, 
+ * without any ordering. Commits are read from a shared queue by a pool of 
+ * workers, each one with its own object reader and author set. Workers push 
+ * the parents not seen yet back into the queue, and the author sets are 
+ * merged when the queue is drained.
+ * 
+ * <p>As there is no ordering, a commit older than the <i>since</i> bound 
+ * stops the traversal of its own parents only.</p>
+ * 
+ * <p>Workers are only kept busy by the commits of the frontier, so a linear 
+ * history is read one commit at a time. The scanner is therefore opt-in, 
+ * for histories with many concurrent branches.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class ParallelCommitScanner {
+
+    private static final long POLL_MILLIS = 10L;
+
+    /**
+     * "tree " + 40 hexadecimal digits + LF.
+     */
+    private static final int TREE_LINE_LENGTH = 46;
+
+    /**
+     * "parent " + 40 hexadecimal digits + LF.
+     */
+    private static final int PARENT_LINE_LENGTH = 48;
+    private static final int PARENT_PREFIX_LENGTH = 7;
+
+    private final Repository repository;
+    private final int threads;
+    private final long since;
+
+    private final BlockingQueue<ObjectId> queue = new LinkedBlockingQueue<ObjectId>();
+    private final ConcurrentMap<ObjectId, Boolean> seen = new ConcurrentHashMap<ObjectId, Boolean>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * @param repository local repository
+     * @param threads number of workers
+     * @param since commit time, in seconds, of the oldest commit analysed, or 
+     * <code>0</code>
+     */
+    ParallelCommitScanner(Repository repository, int threads, long since) {
+        super();
+        this.repository = repository;
+        this.threads = threads;
+        this.since = since;
+    }
+
+    /**
+     * @param starts commits to start from
+     * @return the authors of the commits reachable from the starts
+     */
+    Set<Author> scan(Collection<? extends ObjectId> starts) throws AuthorshipException {
+        for(ObjectId start : starts) {
+            this.enqueue(start);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        final List<Future<List<Author>>> results = new ArrayList<Future<List<Author>>>();
+        try {
+            for(int i = 0 ; i < this.threads ; ++i) {
+                results.add(executor.submit(new Worker()));
+            }
+            final Set<Author> authors = new HashSet<Author>();
+            for(Future<List<Author>> result : results) {
+                authors.addAll(result.get());
+            }
+            return authors;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while scanning git repository ["+this.repository.getDirectory()+"]", ie);
+        } catch (ExecutionException ee) {
+            throw new AuthorshipException("Failed to scan git repository ["+this.repository.getDirectory()+"]: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            this.stopped.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a commit if it was not seen before.
+     */
+    private void enqueue(ObjectId id) {
+        final ObjectId key = id.copy();
+        if(this.seen.putIfAbsent(key, Boolean.TRUE) == null) {
+            this.pending.incrementAndGet();
+            this.queue.add(key);
+        }
+    }
+
+    /**
+     * Reads commits from the queue until there are no commits left.
+     */
+    private final class Worker implements Callable<List<Author>> {
+
+        private final AuthorInterner interner = new AuthorInterner();
+
+        public List<Author> call() throws IOException, InterruptedException {
+            final ObjectReader reader = repository.newObjectReader();
+            try {
+                while(!stopped.get()) {
+                    final ObjectId id = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if(id == null) {
+                        if(pending.get() == 0) {
+                            break;
+                        }
+                        continue;
+                    }
+                    try {
+                        this.parse(reader.open(id, Constants.OBJ_COMMIT).getCachedBytes());
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            } catch (IOException ioe) {
+                stopped.set(true);
+                throw ioe;
+            } catch (RuntimeException re) {
+                stopped.set(true);
+                throw re;
+            } finally {
+                reader.release();
+            }
+            return interner.getAuthors();
+        }
+
+        /**
+         * Queues the parents and collects the author of a raw commit.
+         */
+        private void parse(byte[] buffer) {
+            int ptr = TREE_LINE_LENGTH;
+            final int parents = ptr;
+            while(buffer[ptr] == 'p') {
+                ptr += PARENT_LINE_LENGTH;
+            }
+            if(since > 0) {
+                final int committer = RawParseUtils.committer(buffer, ptr);
+                if(committer >= 0) {
+                    final int time = RawParseUtils.nextLF(buffer, committer, '>');
+                    if(RawParseUtils.parseLongBase10(buffer, time, null) < since) {
+                        return;
+                    }
+                }
+            }
+            for(int parent = parents ; parent < ptr ; parent += PARENT_LINE_LENGTH) {
+                enqueue(ObjectId.fromString(buffer, parent + PARENT_PREFIX_LENGTH));
+            }
+            final int author = RawParseUtils.author(buffer, ptr);
+            if(author >= 0) {
+                interner.intern(buffer, author);
+            }
+        }
+    }
+
+}
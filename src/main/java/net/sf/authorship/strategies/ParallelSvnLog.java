@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.authorship.util.AuthorshipException;
+
+import org.apache.commons.lang.StringUtils;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * Reads the authors of a revision range split into chunks, logged 
+ * concurrently. Each chunk checks out one of the sessions, so there are never 
+ * more requests in flight than sessions. The authors of each chunk are merged 
+ * in the requested revision order once all the chunks are read.
+ * 
+ * <p>SVN looks up the path of each chunk in its newest revision, so the 
+ * sessions should be at the repository root: a path below it fails the 
+ * chunks older than the path.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class ParallelSvnLog {
+
+    private final BlockingQueue<SVNRepository> sessions;
+    private final int threads;
+    private final String path;
+    private final long chunkSize;
+
+    /**
+     * @param sessions open sessions to the same repository, closed by the 
+     * caller
+     * @param path path relative to the session location
+     * @param chunkSize number of revisions of each chunk
+     */
+    ParallelSvnLog(List<SVNRepository> sessions, String path, long chunkSize) {
+        super();
+        this.sessions = new ArrayBlockingQueue<SVNRepository>(sessions.size(), false, sessions);
+        this.threads = sessions.size();
+        this.path = path;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param start first revision
+     * @param end last revision, inclusive, older than the first one to read 
+     * the log backwards
+     * @return author ids of the revisions, in the order they first appear
+     */
+    Set<String> scan(long start, long end) throws SVNException {
+        final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        final List<Future<Set<String>>> results = new ArrayList<Future<Set<String>>>();
+        try {
+            if(start <= end) {
+                for(long chunkStart = start ; chunkStart <= end ; chunkStart += this.chunkSize) {
+                    results.add(executor.submit(new Chunk(chunkStart, Math.min(end, chunkStart + this.chunkSize - 1L))));
+                }
+            } else {
+                for(long chunkStart = start ; chunkStart >= end ; chunkStart -= this.chunkSize) {
+                    results.add(executor.submit(new Chunk(chunkStart, Math.max(end, chunkStart - this.chunkSize + 1L))));
+                }
+            }
+            final Set<String> authorIds = new LinkedHashSet<String>();
+            for(Future<Set<String>> result : results) {
+                authorIds.addAll(result.get());
+            }
+            return authorIds;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while reading SVN log", ie);
+        } catch (ExecutionException ee) {
+            if(ee.getCause() instanceof SVNException) {
+                throw (SVNException) ee.getCause();
+            }
+            throw new AuthorshipException("Failed to read SVN log: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Logs a revision range on a session checked out from the pool.
+     */
+    private final class Chunk implements Callable<Set<String>> {
+
+        private final long start;
+        private final long end;
+
+        Chunk(long start, long end) {
+            super();
+            this.start = start;
+            this.end = end;
+        }
+
+        public Set<String> call() throws SVNException, InterruptedException {
+            final Set<String> authorIds = new LinkedHashSet<String>();
+            final SVNRepository session = sessions.take();
+            try {
+                session.log(new String[] { path }, start, end, 
+                    false, // changedPath
+                    false, // strictNode
+                    0L, // no limit
+                    new ISVNLogEntryHandler() {
+                        public void handleLogEntry(SVNLogEntry logEntry) {
+                            if(StringUtils.isNotBlank(logEntry.getAuthor())) {
+                                authorIds.add(logEntry.getAuthor());
+                            }
+                        }
+                    });
+            } finally {
+                sessions.put(session);
+            }
+            return authorIds;
+        }
+    }
+
+}
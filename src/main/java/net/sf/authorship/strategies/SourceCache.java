@@ -0,0 +1,282 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorshipException;
+
+/**
+ * Authors found in each source file, keyed by the path of the file and 
+ * fingerprinted by its size and modification time. A file whose fingerprint 
+ * did not change between runs does not need to be read again. When content 
+ * hashes are enabled, a file whose size or modification time changed but 
+ * whose content did not (e.g. after a fresh checkout) is not read again 
+ * either. Entries not used during a run, such as deleted files, are dropped 
+ * when the cache is stored.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+final class SourceCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SourceCache.class.getCanonicalName());
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String settings;
+    private final boolean contentHash;
+    private final Map<String, Entry> previous;
+    private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+
+    private SourceCache(String settings, boolean contentHash, Map<String, Entry> previous) {
+        super();
+        this.settings = settings;
+        this.contentHash = contentHash;
+        this.previous = previous;
+    }
+
+    /**
+     * @param path path of the file, relative to the sources folder
+     * @param file source file
+     * @return the cached authors of the file, or <code>null</code> if the file 
+     * is not cached or changed
+     */
+    List<Author> get(String path, File file) {
+        final Entry entry = this.previous.get(path);
+        if(entry == null) {
+            return null;
+        }
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        if(entry.length == length && entry.lastModified == lastModified) {
+            this.current.put(path, entry);
+            return entry.authors;
+        }
+        if(this.contentHash && entry.hash != null && entry.length == length) {
+            final byte[] hash = hash(file);
+            if(hash != null && Arrays.equals(hash, entry.hash)) {
+                this.current.put(path, new Entry(length, lastModified, hash, entry.authors));
+                return entry.authors;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path path of the file, relative to the sources folder
+     * @param length size of the file before it was read
+     * @param lastModified modification time of the file before it was read
+     * @param file source file
+     * @param authors authors of the file
+     */
+    void put(String path, long length, long lastModified, File file, List<Author> authors) {
+        final byte[] hash = this.contentHash ? hash(file) : null;
+        this.current.put(path, new Entry(length, lastModified, hash, Collections.unmodifiableList(new ArrayList<Author>(authors))));
+    }
+
+    /**
+     * @param file cache file
+     * @param settings reading settings, such as the encoding; the cache is 
+     * discarded when they change
+     * @param contentHash whether to fingerprint files by their content hash 
+     * too
+     * @return the cache read from the file, or an empty cache if the file does 
+     * not exist, could not be read, or was written with other settings
+     */
+    static SourceCache load(File file, String settings, boolean contentHash) {
+        final Map<String, Entry> entries = new HashMap<String, Entry>();
+        if(file == null || !file.isFile()) {
+            return new SourceCache(settings, contentHash, entries);
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(input.readInt() != VERSION || !settings.equals(input.readUTF())) {
+                return new SourceCache(settings, contentHash, entries);
+            }
+            final int files = input.readInt();
+            for(int i = 0 ; i < files ; ++i) {
+                final String path = input.readUTF();
+                final long length = input.readLong();
+                final long lastModified = input.readLong();
+                byte[] hash = null;
+                final int hashLength = input.readInt();
+                if(hashLength > 0) {
+                    hash = new byte[hashLength];
+                    input.readFully(hash);
+                }
+                final int authors = input.readInt();
+                final List<Author> fileAuthors = new ArrayList<Author>(authors);
+                for(int j = 0 ; j < authors ; ++j) {
+                    fileAuthors.add(new Author(readString(input), readString(input), readString(input), readString(input)));
+                }
+                entries.put(path, new Entry(length, lastModified, hash, Collections.unmodifiableList(fileAuthors)));
+            }
+        } catch (IOException ioe) {
+            LOGGER.warning("Failed to read source cache ["+file.getAbsolutePath()+"]: " + ioe.getMessage());
+            entries.clear();
+        } finally {
+            closeQuietly(input);
+        }
+        return new SourceCache(settings, contentHash, entries);
+    }
+
+    /**
+     * Stores the entries used during this run.
+     * 
+     * @param file cache file
+     */
+    void store(File file) throws AuthorshipException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new AuthorshipException("Couldn't create source cache directory ["+parent.getAbsolutePath()+"]");
+        }
+        final File temp = new File(parent, file.getName() + "." + System.nanoTime() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeUTF(this.settings);
+            output.writeInt(this.current.size());
+            for(Map.Entry<String, Entry> entry : this.current.entrySet()) {
+                final Entry value = entry.getValue();
+                output.writeUTF(entry.getKey());
+                output.writeLong(value.length);
+                output.writeLong(value.lastModified);
+                if(value.hash != null) {
+                    output.writeInt(value.hash.length);
+                    output.write(value.hash);
+                } else {
+                    output.writeInt(0);
+                }
+                output.writeInt(value.authors.size());
+                for(Author author : value.authors) {
+                    writeString(output, author.getId());
+                    writeString(output, author.getName());
+                    writeString(output, author.getEmail());
+                    writeString(output, author.getUrl());
+                }
+            }
+            output.close();
+            output = null;
+        } catch (IOException ioe) {
+            closeQuietly(output);
+            temp.delete();
+            throw new AuthorshipException("Failed to write source cache ["+file.getAbsolutePath()+"]", ioe);
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                temp.delete();
+                throw new AuthorshipException("Failed to write source cache ["+file.getAbsolutePath()+"]");
+            }
+        }
+    }
+
+    /**
+     * @return the SHA-1 of the file content, or <code>null</code> if it could 
+     * not be read
+     */
+    private static byte[] hash(File file) {
+        InputStream input = null;
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            input = new FileInputStream(file);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AuthorshipException("SHA-1 is not available", nsae);
+        } catch (IOException ioe) {
+            LOGGER.warning("Failed to hash source ["+file.getAbsolutePath()+"]: " + ioe.getMessage());
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if(value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                LOGGER.warning(ioe.getMessage());
+            }
+        }
+    }
+
+    private static final class Entry {
+        
+        private final long length;
+        private final long lastModified;
+        private final byte[] hash;
+        private final List<Author> authors;
+        
+        Entry(long length, long lastModified, byte[] hash, List<Author> authors) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.authors = authors;
+        }
+    }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorshipException;
+
+import org.apache.tools.ant.DirectoryScanner;
+
+/**
+ * Finds the authors of the source files of a folder. The folder is traversed 
+ * once, and each file is handed over to the {@link AuthorExtractor} of its 
+ * extension. Reading, caching and threads are shared by all the extractors.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class SourceStrategy extends AbstractAuthorshipStrategy<Author> {
+
+    private static final  Logger LOGGER = Logger.getLogger(AuthorshipStrategy.class.getCanonicalName());
+    
+    private static final Map<String, AuthorExtractor> EXTRACTORS;
+    
+    static {
+        final Map<String, AuthorExtractor> extractors = new LinkedHashMap<String, AuthorExtractor>();
+        extractors.put("java", new JavadocExtractor("class", "interface", "enum"));
+        extractors.put("groovy", new JavadocExtractor("class", "interface", "enum", "trait"));
+        extractors.put("scala", new JavadocExtractor("class", "trait", "object"));
+        extractors.put("kt", new JavadocExtractor("class", "interface", "object", "fun"));
+        extractors.put("js", new JavadocExtractor("class", "function"));
+        extractors.put("xml", new XmlExtractor());
+        EXTRACTORS = Collections.unmodifiableMap(extractors);
+    }
+    
+    /**
+     * Slices per thread, so that threads finishing early pick up more work.
+     */
+    private static final int SLICES_PER_THREAD = 4;
+    
+    private static final String CACHE_FILE_SUFFIX = ".sources.bin";
+    
+    private final String folder;
+    private final int threads;
+    private final Map<String, AuthorExtractor> extractors;
+    private Charset charset = Charset.defaultCharset();
+    private boolean fullScan = false;
+    private File cacheDirectory;
+    private boolean contentHash = false;
+    
+    /**
+     * @param folder sources folder
+     * @param threads number of threads reading the sources
+     * @param extractors extractors by file extension, without the dot
+     */
+    public SourceStrategy(String folder, int threads, Map<String, AuthorExtractor> extractors) {
+        super();
+        this.folder = folder;
+        this.threads = threads;
+        this.extractors = new LinkedHashMap<String, AuthorExtractor>();
+        for(Map.Entry<String, AuthorExtractor> entry : extractors.entrySet()) {
+            this.extractors.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue());
+        }
+    }
+    
+    /**
+     * @param folder sources folder
+     * @param threads number of threads reading the sources
+     * @param extensions file extensions to read, without the dot, among the 
+     * ones of {@link #getDefaultExtractors()}
+     */
+    public SourceStrategy(String folder, int threads, String... extensions) {
+        this(folder, threads, getDefaultExtractors(extensions));
+    }
+    
+    /**
+     * @return the built-in extractors by file extension: Javadoc style tags 
+     * for <i>java</i>, <i>groovy</i>, <i>scala</i>, <i>kt</i> and 
+     * <i>js</i>, and author elements and tags for <i>xml</i>
+     */
+    public static Map<String, AuthorExtractor> getDefaultExtractors() {
+        return EXTRACTORS;
+    }
+    
+    /**
+     * @param extensions file extensions, without the dot
+     * @return the built-in extractors of the extensions
+     * @throws AuthorshipException if an extension has no built-in extractor
+     */
+    public static Map<String, AuthorExtractor> getDefaultExtractors(String... extensions) throws AuthorshipException {
+        final Map<String, AuthorExtractor> extractors = new LinkedHashMap<String, AuthorExtractor>();
+        for(String extension : extensions) {
+            final String key = extension.trim().toLowerCase(Locale.ENGLISH);
+            final AuthorExtractor extractor = EXTRACTORS.get(key);
+            if(extractor == null) {
+                throw new AuthorshipException("No author extractor for source extension ["+extension+"], known extensions are " + EXTRACTORS.keySet());
+            }
+            extractors.put(key, extractor);
+        }
+        return extractors;
+    }
+    
+    /**
+     * @param encoding encoding of the sources, or <code>null</code> for the 
+     * platform encoding
+     */
+    public void setEncoding(String encoding) {
+        try {
+            this.charset = encoding == null || encoding.trim().length() == 0 ? Charset.defaultCharset() : Charset.forName(encoding.trim());
+        } catch (IllegalArgumentException iae) {
+            throw new AuthorshipException("Unsupported source encoding ["+encoding+"]", iae);
+        }
+    }
+    
+    /**
+     * @param fullScan whether to read the whole sources, instead of stopping 
+     * at the end of their header
+     */
+    public void setFullScan(boolean fullScan) {
+        this.fullScan = fullScan;
+    }
+    
+    /**
+     * @param cacheDirectory directory where the authors of each source are 
+     * kept between runs, so that only added or changed sources are read. 
+     * When <code>null</code>, all the sources are always read.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+    
+    /**
+     * @param contentHash whether cached sources are fingerprinted by their 
+     * content hash too, and not only by their size and modification time
+     */
+    public void setContentHash(boolean contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.StreamingAuthorshipStrategy#readAuthors(net.sf.authorship.strategies.AuthorHandler)
+     */
+    public boolean readAuthors(AuthorHandler<Author> handler) throws AuthorshipException {
+        final String[] sources;
+        try {
+            sources = this.scan(folder);
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Failed to read sources folder ["+this.folder+"]", ioe);
+        }
+        if(sources == null || sources.length == 0) {
+            return true;
+        }
+        final File cacheFile = this.cacheDirectory == null ? null : 
+            new File(this.cacheDirectory, SvnStrategy.getCacheKey(new File(this.folder).getAbsolutePath() + this.extractors.keySet()) + CACHE_FILE_SUFFIX);
+        final SourceCache cache = cacheFile == null ? null : 
+            SourceCache.load(cacheFile, this.getCacheSettings(), this.contentHash);
+        final boolean completed = this.threads > 1 && sources.length > 1 ? 
+                this.readAuthors(sources, cache, handler) : 
+                this.readAuthors(sources, 0, sources.length, cache, handler);
+        if(completed && cache != null) {
+            try {
+                cache.store(cacheFile);
+            } catch (AuthorshipException ae) {
+                LOGGER.warning(ae.getMessage());
+            }
+        }
+        return completed;
+    }
+    
+    /**
+     * Reads a slice of the sources sequentially.
+     * 
+     * @param sources sources, relative to the folder
+     * @param start first source of the slice
+     * @param end end of the slice, exclusive
+     * @param cache source cache, may be <code>null</code>
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    private boolean readAuthors(String[] sources, int start, int end, SourceCache cache, AuthorHandler<Author> handler) {
+        final Set<Author> authors = new LinkedHashSet<Author>();
+        final List<Author> fileAuthors = new ArrayList<Author>();
+        for(int i = start ; i < end ; ++i) {
+            fileAuthors.clear();
+            this.readAuthors(sources[i], cache, fileAuthors);
+            for(Author author : fileAuthors) {
+                if(authors.add(author) && !handler.handleAuthor(author)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reads the sources in contiguous slices, concurrently. Each slice keeps 
+     * its own author set, and the slices are handled in order, as soon as 
+     * they are read, so the authors come in the same order as a sequential 
+     * read.
+     * 
+     * @param sources sources, relative to the folder
+     * @param cache source cache, may be <code>null</code>
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    private boolean readAuthors(final String[] sources, final SourceCache cache, AuthorHandler<Author> handler) throws AuthorshipException {
+        final int slices = Math.min(sources.length, this.threads * SLICES_PER_THREAD);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, slices));
+        final List<Future<Set<Author>>> results = new ArrayList<Future<Set<Author>>>(slices);
+        try {
+            for(int i = 0 ; i < slices ; ++i) {
+                final int start = (int) ((long) sources.length * i / slices);
+                final int end = (int) ((long) sources.length * (i + 1) / slices);
+                results.add(executor.submit(new Callable<Set<Author>>() {
+                    public Set<Author> call() {
+                        final Set<Author> sliceAuthors = new LinkedHashSet<Author>();
+                        readAuthors(sources, start, end, cache, new AuthorHandler<Author>() {
+                            public boolean handleAuthor(Author author) {
+                                sliceAuthors.add(author);
+                                return true;
+                            }
+                        });
+                        return sliceAuthors;
+                    }
+                }));
+            }
+            final Set<Author> authors = new LinkedHashSet<Author>();
+            for(Future<Set<Author>> result : results) {
+                for(Author author : result.get()) {
+                    if(authors.add(author) && !handler.handleAuthor(author)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while reading sources folder ["+this.folder+"]", ie);
+        } catch (ExecutionException ee) {
+            throw new AuthorshipException("Failed to read sources folder ["+this.folder+"]: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Adds the valid authors of a source, in the order they appear. Sources that did not change since they were 
+     * cached are not read.
+     * 
+     * @param source source, relative to the folder
+     * @param cache source cache, may be <code>null</code>
+     * @param authors receives the authors
+     */
+    private void readAuthors(String source, SourceCache cache, List<Author> authors) {
+        final File file = new File(this.folder, source);
+        if(cache != null) {
+            final List<Author> cached = cache.get(source, file);
+            if(cached != null) {
+                authors.addAll(cached);
+                return;
+            }
+        }
+        final AuthorExtractor extractor = this.extractors.get(getExtension(source));
+        if(extractor == null) {
+            return;
+        }
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        try {
+            extractor.extract(file, this.charset, this.fullScan, authors);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to read source ["+source+"]: " + e.getMessage());
+            return;
+        }
+        if(cache != null) {
+            cache.put(source, length, lastModified, file, authors);
+        }
+    }
+    
+    /**
+     * @return the reading settings; cached authors read with other settings 
+     * are discarded
+     */
+    private String getCacheSettings() {
+        final StringBuilder settings = new StringBuilder(this.charset.name()).append(this.fullScan ? ",full" : ",header");
+        for(Map.Entry<String, AuthorExtractor> entry : this.extractors.entrySet()) {
+            settings.append(',').append(entry.getKey()).append('=').append(entry.getValue().getClass().getName());
+        }
+        return settings.toString();
+    }
+    
+    private static String getExtension(String source) {
+        final int dot = source.lastIndexOf('.');
+        return dot < 0 ? "" : source.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+    }
+    
+    /**
+     * Traverses the folder once, for all the extensions.
+     */
+    private String[] scan(String folder) throws IOException {
+        final List<String> includes = new ArrayList<String>(this.extractors.size());
+        for(String extension : this.extractors.keySet()) {
+            includes.add("**/*." + extension);
+        }
+        final DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(folder);
+        ds.setCaseSensitive(false);
+        ds.setIncludes(includes.toArray(new String[includes.size()]));
+        ds.scan();
+        return ds.getIncludedFiles();
+    }
+
+}
@@ -38,6 +38,9 @@ public class SvnOptions {
     private SVNRevision endRevision;
     long limit;
     String path;
+    private boolean lean;
+    private int threads;
+    private long chunkSize;
 
     /**
      * 
@@ -46,8 +49,11 @@ public class SvnOptions {
         pegRevision = SVNRevision.create(0L);
         startRevision = SVNRevision.create(0L);
         endRevision = SVNRevision.HEAD;
-        limit = 999999L;
+        limit = 0L;
         path = "";
+        lean = true;
+        threads = 1;
+        chunkSize = 10000L;
     }
 
     /**
@@ -65,6 +71,9 @@ public class SvnOptions {
         this.endRevision = endRevision;
         this.limit = limit;
         this.path = path;
+        this.lean = true;
+        this.threads = 1;
+        this.chunkSize = 10000L;
     }
 
     /**
@@ -113,7 +122,8 @@ public class SvnOptions {
     }
 
     /**
-     * @return the limit
+     * @return the maximum number of log entries read, <code>0</code> for no 
+     * limit
      */
     public long getLimit() {
         return limit;
@@ -142,4 +152,52 @@ public class SvnOptions {
         this.path = path;
     }
 
+    /**
+     * @return whether the log is read without the changed paths of each 
+     * revision
+     */
+    public boolean isLean() {
+        return lean;
+    }
+
+    /**
+     * @param lean
+     *            whether the log is read without the changed paths of each 
+     *            revision, only the revision properties
+     */
+    public void setLean(boolean lean) {
+        this.lean = lean;
+    }
+
+    /**
+     * @return the number of sessions reading the log concurrently
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads
+     *            the number of sessions reading the log concurrently, in 
+     *            lean mode
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of revisions read by each concurrent request
+     */
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize
+     *            the number of revisions read by each concurrent request
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
 }
@@ -0,0 +1,399 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+import net.sf.authorship.model.PathIndex;
+import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.CacheLock;
+
+import org.apache.commons.lang.StringUtils;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * SVN Strategy that indexes the changed paths of every revision under the 
+ * SVN url, so that the authors of any directory below it are found with a 
+ * single log. Unlike the lean log of {@link SvnStrategy}, the log includes 
+ * the changed paths. When a cache directory is set, the index is kept 
+ * between runs and only the revisions after the last indexed one are read. 
+ * Large ranges are split into chunks logged concurrently, as in the lean 
+ * log.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class SvnPathIndexStrategy extends AbstractAuthorshipStrategy<Author> {
+
+    private static final Logger LOGGER = Logger.getLogger(SvnPathIndexStrategy.class.getCanonicalName());
+
+    private static final String INDEX_FILE_SUFFIX = ".paths.bin";
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+
+    private static final String INDEX_UUID = "uuid";
+    private static final String INDEX_URL = "url";
+    private static final String INDEX_START = "startRevision";
+    private static final String INDEX_LAST = "lastRevision";
+
+    private final String readOnlyUrl;
+    private final SvnOptions svnOptions;
+    private final SvnSessionPool sessionPool;
+    private File cacheDirectory;
+    private String pathPrefix;
+    private PathIndex index;
+
+    /**
+     * Svn path index strategy constructor, using the sessions shared by the 
+     * build.
+     * 
+     * @param protocol enum for protocol type
+     * @param readOnlyUrl read only SVN url
+     * @param svnOptions SVN options, for the revision range and the chunks
+     */
+    public SvnPathIndexStrategy(SvnStrategy.PROTOCOL protocol, String readOnlyUrl, SvnOptions svnOptions) {
+        this(protocol, readOnlyUrl, svnOptions, SvnSessionPool.getDefault());
+    }
+
+    /**
+     * Svn path index strategy constructor.
+     * 
+     * @param protocol enum for protocol type
+     * @param readOnlyUrl read only SVN url
+     * @param svnOptions SVN options, for the revision range and the chunks
+     * @param sessionPool pool of SVN sessions
+     */
+    public SvnPathIndexStrategy(SvnStrategy.PROTOCOL protocol, String readOnlyUrl, SvnOptions svnOptions, 
+            SvnSessionPool sessionPool) {
+        SvnSessionPool.setup(protocol);
+        this.readOnlyUrl = readOnlyUrl;
+        this.svnOptions = svnOptions;
+        this.sessionPool = sessionPool;
+    }
+
+    /**
+     * @param cacheDirectory directory where the index and the last revision 
+     * indexed are kept between runs, keyed by SVN url, or <code>null</code> 
+     * to always index the whole log. It may be shared by builds and modules.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * @param pathPrefix directory, relative to the SVN url, whose authors are 
+     * returned by {@link #getAuthors()}
+     */
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * @return the index, once the authors were retrieved
+     */
+    public PathIndex getIndex() {
+        return index;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.StreamingAuthorshipStrategy#readAuthors(net.sf.authorship.strategies.AuthorHandler)
+     */
+    public boolean readAuthors(AuthorHandler<Author> handler) throws AuthorshipException {
+        final SVNURL url;
+        try {
+            url = SVNURL.parseURIDecoded(this.readOnlyUrl);
+        } catch (SVNException svne) {
+            throw new AuthorshipException("Invalid SVN url ["+this.readOnlyUrl+"]", svne);
+        }
+        final List<SVNRepository> sessions = new ArrayList<SVNRepository>();
+        boolean reusable = false;
+        try {
+            sessions.add(this.sessionPool.checkout(url));
+            final SVNRepository session = sessions.get(0);
+            final long start = SvnStrategy.getRevisionNumber(session, this.svnOptions.getStartRevision());
+            final long end = SvnStrategy.getRevisionNumber(session, this.svnOptions.getEndRevision());
+            if(this.cacheDirectory == null) {
+                this.index = this.newIndex(null, start);
+                this.log(url, sessions, start, end);
+            } else {
+                final File indexFile = new File(this.cacheDirectory, SvnStrategy.getCacheKey(this.readOnlyUrl) + INDEX_FILE_SUFFIX);
+                // modules and builds indexing the same url wait for the first 
+                // one, then find the index up to date
+                final CacheLock lock = CacheLock.acquire(new File(this.cacheDirectory, indexFile.getName() + LOCK_FILE_SUFFIX));
+                try {
+                    final String uuid = session.getRepositoryUUID(true);
+                    this.index = this.loadIndex(indexFile, uuid, start, end);
+                    final long from;
+                    if(this.index != null) {
+                        from = Long.parseLong(this.index.getMetadata(INDEX_LAST)) + 1L;
+                        LOGGER.fine("Indexing SVN log from revision ["+from+"] to ["+end+"], earlier revisions are indexed");
+                    } else {
+                        this.index = this.newIndex(uuid, start);
+                        from = start;
+                    }
+                    if(from <= end) {
+                        this.log(url, sessions, from, end);
+                    }
+                    this.index.setMetadata(INDEX_LAST, Long.toString(Math.max(end, from - 1L)));
+                    try {
+                        this.index.store(indexFile);
+                    } catch (AuthorshipException ae) {
+                        LOGGER.warning(ae.getMessage());
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+            reusable = true;
+        } catch (SVNException svne) {
+            throw new AuthorshipException("Failed to index SVN log ["+this.readOnlyUrl+"]: " + svne.getMessage(), svne);
+        } finally {
+            // sessions of a failed request may be in the middle of a 
+            // response, so they are not reused
+            for(SVNRepository session : sessions) {
+                if(reusable) {
+                    this.sessionPool.release(session);
+                } else {
+                    this.sessionPool.discard(session);
+                }
+            }
+        }
+        return emit(this.index.getAuthors(this.pathPrefix).keySet(), handler);
+    }
+
+    private PathIndex newIndex(String uuid, long start) {
+        final PathIndex pathIndex = new PathIndex();
+        pathIndex.setMetadata(INDEX_UUID, uuid);
+        pathIndex.setMetadata(INDEX_URL, this.readOnlyUrl);
+        pathIndex.setMetadata(INDEX_START, Long.toString(start));
+        return pathIndex;
+    }
+
+    /**
+     * @return the index of a previous run over the same repository and start 
+     * revision, or <code>null</code>
+     */
+    private PathIndex loadIndex(File indexFile, String uuid, long start, long end) {
+        final PathIndex pathIndex = PathIndex.load(indexFile);
+        if(pathIndex == null) {
+            return null;
+        }
+        if(!uuid.equals(pathIndex.getMetadata(INDEX_UUID)) || !this.readOnlyUrl.equals(pathIndex.getMetadata(INDEX_URL)) 
+                || !Long.toString(start).equals(pathIndex.getMetadata(INDEX_START))) {
+            LOGGER.fine("Ignoring SVN path index ["+indexFile.getAbsolutePath()+"] created with different settings");
+            return null;
+        }
+        try {
+            if(Long.parseLong(pathIndex.getMetadata(INDEX_LAST)) > end) {
+                LOGGER.fine("Ignoring SVN path index ["+indexFile.getAbsolutePath()+"] indexed past revision ["+end+"]");
+                return null;
+            }
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+        return pathIndex;
+    }
+
+    /**
+     * Indexes a revision range. When more than one thread is configured and 
+     * the range is larger than a chunk, the chunks are logged concurrently, 
+     * each one over its own session, and indexed in revision order. Chunks 
+     * are logged at the repository root, as the SVN url may not exist in 
+     * the older chunks, and their changed paths are filtered as usual.
+     */
+    private void log(SVNURL url, List<SVNRepository> sessions, long start, long end) throws SVNException {
+        final SVNURL rootUrl = sessions.get(0).getRepositoryRoot(true);
+        // changed paths are absolute in the repository
+        final String base = StringUtils.removeEnd(url.getPath().substring(rootUrl.getPath().length()), "/") + "/";
+        final Indexer indexer = new Indexer(this.index);
+        final long revisions = end - start + 1L;
+        final long chunkSize = this.svnOptions.getChunkSize();
+        if(this.svnOptions.getThreads() <= 1 || chunkSize <= 0L || revisions <= chunkSize) {
+            sessions.get(0).log(new String[] { "" }, start, end, 
+                true, // changedPath
+                false, // strictNode
+                0L, // no limit
+                new ISVNLogEntryHandler() {
+                    public void handleLogEntry(SVNLogEntry logEntry) {
+                        indexer.add(Revision.of(logEntry, base));
+                    }
+                });
+            return;
+        }
+        final int threads = (int) Math.min(this.svnOptions.getThreads(), (revisions + chunkSize - 1L) / chunkSize);
+        final List<SVNRepository> rootSessions = new ArrayList<SVNRepository>();
+        while(rootSessions.size() < threads) {
+            final SVNRepository session = this.sessionPool.checkout(rootUrl);
+            sessions.add(session);
+            rootSessions.add(session);
+        }
+        final BlockingQueue<SVNRepository> idle = new ArrayBlockingQueue<SVNRepository>(threads, false, rootSessions);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<List<Revision>>> results = new ArrayList<Future<List<Revision>>>();
+        try {
+            for(long chunkStart = start ; chunkStart <= end ; chunkStart += chunkSize) {
+                results.add(executor.submit(new Chunk(idle, base, chunkStart, Math.min(end, chunkStart + chunkSize - 1L))));
+            }
+            for(int i = 0 ; i < results.size() ; ++i) {
+                for(Revision revision : results.get(i).get()) {
+                    indexer.add(revision);
+                }
+                // indexed chunks are not retained
+                results.set(i, null);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AuthorshipException("Interrupted while indexing SVN log", ie);
+        } catch (ExecutionException ee) {
+            if(ee.getCause() instanceof SVNException) {
+                throw (SVNException) ee.getCause();
+            }
+            throw new AuthorshipException("Failed to index SVN log: " + ee.getCause().getMessage(), ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Author and changed paths, relative to the SVN url, of a revision.
+     */
+    private static final class Revision {
+
+        private final String author;
+        private final List<String> paths;
+
+        private Revision(String author, List<String> paths) {
+            this.author = author;
+            this.paths = paths;
+        }
+
+        /**
+         * @return the revision, or <code>null</code> if it has no author or 
+         * changed no path below the base
+         */
+        static Revision of(SVNLogEntry logEntry, String base) {
+            if(StringUtils.isBlank(logEntry.getAuthor()) || logEntry.getChangedPaths() == null) {
+                return null;
+            }
+            List<String> paths = null;
+            for(Iterator<?> it = logEntry.getChangedPaths().keySet().iterator() ; it.hasNext() ; ) {
+                final String path = (String) it.next();
+                if(path.startsWith(base)) {
+                    if(paths == null) {
+                        paths = new ArrayList<String>();
+                    }
+                    paths.add(path.substring(base.length()));
+                }
+            }
+            return paths == null ? null : new Revision(logEntry.getAuthor(), paths);
+        }
+    }
+
+    /**
+     * Adds revisions to the index, in revision order.
+     */
+    private static final class Indexer {
+
+        private final PathIndex index;
+        private final Map<String, Author> authors = new HashMap<String, Author>();
+
+        Indexer(PathIndex index) {
+            this.index = index;
+        }
+
+        void add(Revision revision) {
+            if(revision == null) {
+                return;
+            }
+            Author author = authors.get(revision.author);
+            if(author == null) {
+                author = new Author();
+                author.setId(revision.author);
+                authors.put(revision.author, author);
+            }
+            final int authorId = index.startCommit(author);
+            for(String path : revision.paths) {
+                index.addPath(authorId, path);
+            }
+        }
+    }
+
+    /**
+     * Logs a revision range on a session taken from the idle ones.
+     */
+    private static final class Chunk implements Callable<List<Revision>> {
+
+        private final BlockingQueue<SVNRepository> sessions;
+        private final String base;
+        private final long start;
+        private final long end;
+
+        Chunk(BlockingQueue<SVNRepository> sessions, String base, long start, long end) {
+            this.sessions = sessions;
+            this.base = base;
+            this.start = start;
+            this.end = end;
+        }
+
+        public List<Revision> call() throws SVNException, InterruptedException {
+            final List<Revision> revisions = new ArrayList<Revision>();
+            final SVNRepository session = sessions.take();
+            try {
+                session.log(new String[] { "" }, start, end, 
+                    true, // changedPath
+                    false, // strictNode
+                    0L, // no limit
+                    new ISVNLogEntryHandler() {
+                        public void handleLogEntry(SVNLogEntry logEntry) {
+                            final Revision revision = Revision.of(logEntry, base);
+                            if(revision != null) {
+                                revisions.add(revision);
+                            }
+                        }
+                    });
+            } finally {
+                sessions.put(session);
+            }
+            return revisions;
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import net.sf.authorship.strategies.SvnStrategy.PROTOCOL;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+/**
+ * Pool of open SVN sessions, keyed by repository root, so that the strategies 
+ * of the modules of a build reuse the connections and authentication of the 
+ * first one. Sessions are checked out for a request and released afterwards. 
+ * Idle sessions are closed by {@link #close()}, at the end of the build, or 
+ * by a shutdown hook.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class SvnSessionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(SvnSessionPool.class.getCanonicalName());
+
+    private static final int DEFAULT_MAX_IDLE = 8;
+
+    private static SvnSessionPool defaultPool;
+    private static boolean svnSetup;
+    private static boolean davSetup;
+    private static boolean fsSetup;
+
+    private final ISVNAuthenticationManager authManager;
+    private final int maxIdle;
+
+    private final ConcurrentMap<String, SVNURL> roots = new ConcurrentHashMap<String, SVNURL>();
+    private final ConcurrentMap<String, Queue<SVNRepository>> idle = new ConcurrentHashMap<String, Queue<SVNRepository>>();
+
+    /**
+     * @param authManager authentication of the sessions
+     * @param maxIdle maximum number of idle sessions kept per repository root
+     */
+    public SvnSessionPool(ISVNAuthenticationManager authManager, int maxIdle) {
+        super();
+        this.authManager = authManager;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @return the pool shared by the whole build, closed when the JVM exits
+     */
+    public static synchronized SvnSessionPool getDefault() {
+        if(defaultPool == null) {
+            final SvnSessionPool pool = new SvnSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), DEFAULT_MAX_IDLE);
+            Runtime.getRuntime().addShutdownHook(new Thread("authorship-svn-pool") {
+                @Override
+                public void run() {
+                    pool.close();
+                }
+            });
+            defaultPool = pool;
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Closes the idle sessions of the pool shared by the build, if it was 
+     * used.
+     */
+    public static synchronized void closeDefault() {
+        if(defaultPool != null) {
+            defaultPool.close();
+        }
+    }
+
+    /**
+     * Registers the repository factory of a protocol, once per JVM.
+     * 
+     * @param protocol SVN protocol
+     */
+    public static synchronized void setup(PROTOCOL protocol) {
+        if(protocol == PROTOCOL.SVN && !svnSetup) {
+            SVNRepositoryFactoryImpl.setup();
+            svnSetup = true;
+        } else if(protocol == PROTOCOL.HTTP_HTTPS && !davSetup) {
+            DAVRepositoryFactory.setup();
+            davSetup = true;
+        } else if(protocol == PROTOCOL.FILE && !fsSetup) {
+            FSRepositoryFactory.setup();
+            fsSetup = true;
+        }
+    }
+
+    /**
+     * @return authentication of the sessions
+     */
+    public ISVNAuthenticationManager getAuthenticationManager() {
+        return authManager;
+    }
+
+    /**
+     * Checks out an idle session of the repository, or opens a new one. The 
+     * session location is set to the given url.
+     * 
+     * @param url SVN url
+     * @return the session, that must be released or discarded by the caller
+     */
+    public SVNRepository checkout(SVNURL url) throws SVNException {
+        final SVNURL root = this.roots.get(url.toString());
+        if(root != null) {
+            final Queue<SVNRepository> sessions = this.idle.get(root.toString());
+            final SVNRepository session = sessions != null ? sessions.poll() : null;
+            if(session != null) {
+                session.setLocation(url, false);
+                return session;
+            }
+        }
+        final SVNRepository session = SVNRepositoryFactory.create(url);
+        session.setAuthenticationManager(this.authManager);
+        if(root == null) {
+            this.roots.putIfAbsent(url.toString(), session.getRepositoryRoot(true));
+        }
+        return session;
+    }
+
+    /**
+     * Returns a session to the pool, after a successful request.
+     * 
+     * @param session session checked out from this pool
+     */
+    public void release(SVNRepository session) {
+        // the root was found when the session was checked out
+        final SVNURL root = this.roots.get(session.getLocation().toString());
+        if(root == null) {
+            this.discard(session);
+            return;
+        }
+        Queue<SVNRepository> sessions = this.idle.get(root.toString());
+        if(sessions == null) {
+            final Queue<SVNRepository> newSessions = new ConcurrentLinkedQueue<SVNRepository>();
+            sessions = this.idle.putIfAbsent(root.toString(), newSessions);
+            if(sessions == null) {
+                sessions = newSessions;
+            }
+        }
+        if(sessions.size() >= this.maxIdle) {
+            this.discard(session);
+        } else {
+            sessions.add(session);
+        }
+    }
+
+    /**
+     * Closes a session that is not returned to the pool, e.g. after a failed 
+     * request.
+     * 
+     * @param session session checked out from this pool
+     */
+    public void discard(SVNRepository session) {
+        try {
+            session.closeSession();
+        } catch (SVNException svne) {
+            LOGGER.fine("Failed to close SVN session: " + svne.getMessage());
+        }
+    }
+
+    /**
+     * Closes the idle sessions. The pool remains usable, and opens new 
+     * sessions when needed.
+     */
+    public void close() {
+        final List<SVNRepository> sessions = new ArrayList<SVNRepository>();
+        for(Map.Entry<String, Queue<SVNRepository>> entry : this.idle.entrySet()) {
+            SVNRepository session;
+            while((session = entry.getValue().poll()) != null) {
+                sessions.add(session);
+            }
+        }
+        for(SVNRepository session : sessions) {
+            this.discard(session);
+        }
+        if(!sessions.isEmpty()) {
+            LOGGER.fine("Closed " + sessions.size() + " SVN sessions");
+        }
+    }
+
+}
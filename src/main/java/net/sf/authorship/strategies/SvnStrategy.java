@@ -23,22 +23,31 @@
  */
 package net.sf.authorship.strategies;
 
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Logger;
 
 import net.sf.authorship.model.Author;
+import net.sf.authorship.util.AuthorCache;
 import net.sf.authorship.util.AuthorshipException;
+import net.sf.authorship.util.CacheLock;
 
 import org.apache.commons.lang.StringUtils;
 import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNCancelException;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
-import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
-import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.wc.ISVNOptions;
 import org.tmatesoft.svn.core.wc.SVNLogClient;
+import org.tmatesoft.svn.core.wc.SVNRevision;
 import org.tmatesoft.svn.core.wc.SVNWCUtil;
 
 /**
@@ -48,57 +57,81 @@ import org.tmatesoft.svn.core.wc.SVNWCUtil;
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 0.1
  */
-public class SvnStrategy implements AuthorshipStrategy<Author> {
+public class SvnStrategy extends AbstractAuthorshipStrategy<Author> {
 
     public enum PROTOCOL {
-        SVN, HTTP_HTTPS
+        SVN, HTTP_HTTPS, FILE
     };
 
+    private PROTOCOL protocol;
     private String readOnlyUrl;
     private SvnOptions svnOptions;
 
-    private final SVNLogClient logClient;
+    private final SvnSessionPool sessionPool;
+    private SVNLogClient logClient;
+
+    private File cacheDirectory;
+
+    private static final Logger LOGGER = Logger.getLogger(SvnStrategy.class.getCanonicalName());
+
+    private static final String CACHE_FILE_SUFFIX = ".properties";
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+
+    private static final String CACHE_UUID = "uuid";
+    private static final String CACHE_URL = "url";
+    private static final String CACHE_PATH = "path";
+    private static final String CACHE_START = "startRevision";
+    private static final String CACHE_LAST = "lastRevision";
 
     /**
-     * Svn Strategy constructor.
+     * Svn Strategy constructor, using the sessions shared by the build.
      * 
      * @param protocol enum for protocol type
      * @param readOnlyUrl read only SVN url
      * @param svnOptions SVN options for connecting using Java SVN API
      */
     public SvnStrategy(PROTOCOL protocol, String readOnlyUrl, SvnOptions svnOptions) {
-        if(protocol == PROTOCOL.SVN) {
-            SVNRepositoryFactoryImpl.setup();
-        } else if (protocol == PROTOCOL.HTTP_HTTPS) {
-            DAVRepositoryFactory.setup();
-        }
+        this(protocol, readOnlyUrl, svnOptions, SvnSessionPool.getDefault());
+    }
+
+    /**
+     * Svn Strategy constructor.
+     * 
+     * @param protocol enum for protocol type
+     * @param readOnlyUrl read only SVN url
+     * @param svnOptions SVN options for connecting using Java SVN API
+     * @param sessionPool pool of SVN sessions
+     */
+    public SvnStrategy(PROTOCOL protocol, String readOnlyUrl, SvnOptions svnOptions, SvnSessionPool sessionPool) {
+        SvnSessionPool.setup(protocol);
+        this.protocol = protocol;
         this.readOnlyUrl = readOnlyUrl;
         this.svnOptions = svnOptions;
+        this.sessionPool = sessionPool;
+    }
 
-        // Auth manager
-        ISVNAuthenticationManager authManager = SVNWCUtil.createDefaultAuthenticationManager();
-
-        // Options
-        boolean readonly = true;
-        ISVNOptions options = SVNWCUtil.createDefaultOptions(readonly);
-        logClient = new SVNLogClient(authManager, options);
+    /**
+     * @param cacheDirectory directory where the authors and the last revision 
+     * read are kept between runs, keyed by SVN url, or <code>null</code> to 
+     * always read the whole log. It may be shared by builds and modules.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
     }
 
     /* (non-Javadoc)
-     * @see net.sf.authorship.strategies.AuthorshipStrategy#getAuthors()
+     * @see net.sf.authorship.strategies.StreamingAuthorshipStrategy#readAuthors(net.sf.authorship.strategies.AuthorHandler)
      */
-    public Set<Author> getAuthors() {
-        final Set<Author> authors = new LinkedHashSet<Author>();
+    public boolean readAuthors(final AuthorHandler<Author> handler) {
+        final Set<String> authorIds = new LinkedHashSet<String>();
         final ISVNLogEntryHandler authorsSvnLogHandler = new ISVNLogEntryHandler() {
             /**
-             * This method only grabs the author name from the SVN log entry
+             * This method only grabs the author name from the SVN log entry, 
+             * and cancels the log when the handler stops.
              */
             public void handleLogEntry(SVNLogEntry logEntry) throws SVNException {
-                final String authorId = logEntry.getAuthor();
-                if(StringUtils.isNotBlank(authorId)) {
-                    Author author = new Author();
-                    author.setId(authorId);
-                    authors.add(author);
+                if(!handleAuthorId(logEntry.getAuthor(), authorIds, handler)) {
+                    throw new SVNCancelException();
                 }
             }
         };
@@ -112,17 +145,320 @@ public class SvnStrategy implements AuthorshipStrategy<Author> {
         }
         
         try {
-            logClient.doLog(url, new String[] { this.svnOptions.getPath() },
-                this.svnOptions.getPegRevision(),
-                this.svnOptions.getStartRevision(),
-                this.svnOptions.getEndRevision(), Boolean.FALSE, // stopOnCopy
-                Boolean.TRUE, // discoverChangedPaths
-                this.svnOptions.getLimit(), authorsSvnLogHandler);
+            if(this.svnOptions.isLean()) {
+                return this.leanLog(url, authorsSvnLogHandler, authorIds, handler);
+            } else {
+                this.getLogClient().doLog(url, new String[] { this.svnOptions.getPath() },
+                    this.svnOptions.getPegRevision(),
+                    this.svnOptions.getStartRevision(),
+                    this.svnOptions.getEndRevision(), Boolean.FALSE, // stopOnCopy
+                    Boolean.TRUE, // discoverChangedPaths
+                    this.svnOptions.getLimit(), authorsSvnLogHandler);
+            }
+        } catch (SVNCancelException svnce) {
+            return false;
         } catch (SVNException svne) {
             throw new AuthorshipException("Failed to read commit log", svne);
         }
         
-        return authors;
+        return true;
+    }
+
+    /**
+     * Passes an author id to the handler, if it was not handled before.
+     * 
+     * @return <code>false</code> if the handler stopped
+     */
+    private static boolean handleAuthorId(String authorId, Set<String> authorIds, AuthorHandler<Author> handler) {
+        if(StringUtils.isNotBlank(authorId) && authorIds.add(authorId)) {
+            Author author = new Author();
+            author.setId(authorId);
+            return handler.handleAuthor(author);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the log straight from repository sessions, without the changed 
+     * paths of each revision. The peg revision is not used, the path is 
+     * relative to the SVN url. When a cache directory is set and the whole 
+     * range is read, only the revisions after the last cached one are read. 
+     * The authors of a local FSFS repository are read from its revision 
+     * properties files when the whole repository is analysed, and no session 
+     * is opened unless some revision properties are packed.
+     * 
+     * @param url SVN url
+     * @param logHandler log entry handler
+     * @param authorIds author ids already handled
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    private boolean leanLog(SVNURL url, ISVNLogEntryHandler logHandler, Set<String> authorIds, 
+            AuthorHandler<Author> handler) throws SVNException {
+        final FsfsRevprops revprops = this.protocol == PROTOCOL.FILE && StringUtils.isBlank(this.svnOptions.getPath()) 
+                ? FsfsRevprops.open(new File(url.getPath())) : null;
+        final List<SVNRepository> sessions = new ArrayList<SVNRepository>();
+        boolean reusable = false;
+        try {
+            final long start = this.getRevisionNumber(url, sessions, revprops, this.svnOptions.getStartRevision());
+            final long end = this.getRevisionNumber(url, sessions, revprops, this.svnOptions.getEndRevision());
+            final long limit = this.svnOptions.getLimit();
+            if(this.cacheDirectory == null || start > end || (limit > 0L && limit < end - start + 1L)) {
+                if(this.cacheDirectory != null && start <= end) {
+                    LOGGER.info("Not using the SVN author cache, the log of ["+this.readOnlyUrl+"] is limited to ["
+                        + limit + "] entries of revisions ["+start+"] to ["+end+"]");
+                }
+                reusable = this.logRange(url, sessions, revprops, start, end, logHandler, authorIds, handler);
+                return reusable;
+            }
+            final File cacheFile = new File(this.cacheDirectory, getCacheKey(this.readOnlyUrl) + CACHE_FILE_SUFFIX);
+            // modules of the same repository wait for the first one, then 
+            // find the cache up to date
+            final CacheLock lock = CacheLock.acquire(new File(this.cacheDirectory, cacheFile.getName() + LOCK_FILE_SUFFIX));
+            try {
+                final String uuid = revprops != null ? revprops.getUuid() : this.getSession(url, sessions).getRepositoryUUID(true);
+                long from = start;
+                final AuthorCache cache = this.loadCache(cacheFile, uuid, start, end);
+                if(cache != null) {
+                    for(Author author : cache.getAuthors()) {
+                        if(!handleAuthorId(author.getId(), authorIds, handler)) {
+                            return false;
+                        }
+                    }
+                    from = Long.parseLong(cache.getMetadata(CACHE_LAST)) + 1L;
+                    LOGGER.fine("Reading SVN log from revision ["+from+"] to ["+end+"], earlier revisions are cached");
+                }
+                if(from <= end && !this.logRange(url, sessions, revprops, from, end, logHandler, authorIds, handler)) {
+                    return false;
+                }
+                this.storeCache(cacheFile, uuid, start, end, authorIds);
+                reusable = true;
+                return true;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            // sessions of a failed or cancelled request may be in the middle 
+            // of a response, so they are not reused
+            for(SVNRepository session : sessions) {
+                if(reusable) {
+                    this.sessionPool.release(session);
+                } else {
+                    this.sessionPool.discard(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the log of a revision range, from the revision properties files 
+     * of a local repository if possible.
+     * 
+     * @param url SVN url
+     * @param sessions sessions checked out so far
+     * @param revprops revision properties of the local repository, or 
+     * <code>null</code>
+     * @param start first revision
+     * @param end last revision
+     * @param logHandler log entry handler
+     * @param authorIds author ids already handled
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    private boolean logRange(SVNURL url, List<SVNRepository> sessions, FsfsRevprops revprops, long start, long end, 
+            ISVNLogEntryHandler logHandler, Set<String> authorIds, AuthorHandler<Author> handler) throws SVNException {
+        final long limit = this.svnOptions.getLimit();
+        if(revprops != null && start <= end && (limit <= 0L || limit >= end - start + 1L)) {
+            final long unpacked = Math.max(start, revprops.getMinUnpackedRevision());
+            if(unpacked > start && !this.sessionLogRange(url, sessions, start, Math.min(end, unpacked - 1L), logHandler, authorIds, handler)) {
+                return false;
+            }
+            if(unpacked <= end) {
+                for(String authorId : revprops.readAuthors(unpacked, end, this.svnOptions.getThreads())) {
+                    if(!handleAuthorId(authorId, authorIds, handler)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return this.sessionLogRange(url, sessions, start, end, logHandler, authorIds, handler);
+    }
+
+    /**
+     * Reads the log of a revision range through sessions. When more than one 
+     * thread is configured and the whole range of the whole repository is 
+     * read, the range is split into chunks logged concurrently, each one over 
+     * its own session. A path below the root may not exist in the revisions 
+     * of a chunk, e.g. a module created late or a copied branch, so it is 
+     * always logged with a single request.
+     * 
+     * @param url SVN url
+     * @param sessions sessions checked out so far, the first one used for 
+     * sequential reads
+     * @param start first revision
+     * @param end last revision
+     * @param logHandler log entry handler
+     * @param authorIds author ids already handled
+     * @param handler receives the authors
+     * @return <code>false</code> if the handler stopped
+     */
+    private boolean sessionLogRange(SVNURL url, List<SVNRepository> sessions, long start, long end, 
+            ISVNLogEntryHandler logHandler, Set<String> authorIds, AuthorHandler<Author> handler) throws SVNException {
+        final long revisions = Math.abs(end - start) + 1L;
+        final long limit = this.svnOptions.getLimit();
+        final long chunkSize = this.svnOptions.getChunkSize();
+        if(this.svnOptions.getThreads() > 1 && chunkSize > 0L && revisions > chunkSize 
+                && (limit <= 0L || limit >= revisions) 
+                && StringUtils.isBlank(this.svnOptions.getPath()) && isRepositoryRoot(this.getSession(url, sessions))) {
+            final long chunks = (revisions + chunkSize - 1L) / chunkSize;
+            final int threads = (int) Math.min(this.svnOptions.getThreads(), chunks);
+            while(sessions.size() < threads) {
+                sessions.add(this.sessionPool.checkout(url));
+            }
+            final ParallelSvnLog log = new ParallelSvnLog(sessions.subList(0, threads), this.svnOptions.getPath(), chunkSize);
+            for(String authorId : log.scan(start, end)) {
+                if(!handleAuthorId(authorId, authorIds, handler)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        this.getSession(url, sessions).log(new String[] { this.svnOptions.getPath() }, 
+            start, end, 
+            false, // changedPath
+            false, // strictNode
+            limit, logHandler);
+        return true;
+    }
+
+    /**
+     * @param session SVN session
+     * @return whether the session location is the repository root
+     */
+    static boolean isRepositoryRoot(SVNRepository session) throws SVNException {
+        return session.getRepositoryRoot(true).equals(session.getLocation());
+    }
+
+    /**
+     * @return the first session checked out, checking it out if needed
+     */
+    private SVNRepository getSession(SVNURL url, List<SVNRepository> sessions) throws SVNException {
+        if(sessions.isEmpty()) {
+            sessions.add(this.sessionPool.checkout(url));
+        }
+        return sessions.get(0);
+    }
+
+    /**
+     * @return the number of a revision, resolving HEAD against the local 
+     * repository when possible, and against a session otherwise
+     */
+    private long getRevisionNumber(SVNURL url, List<SVNRepository> sessions, FsfsRevprops revprops, 
+            SVNRevision revision) throws SVNException {
+        if(revision != null && SVNRevision.isValidRevisionNumber(revision.getNumber())) {
+            return revision.getNumber();
+        }
+        if(revprops != null && (revision == null || SVNRevision.HEAD.equals(revision))) {
+            return revprops.getYoungestRevision();
+        }
+        return getRevisionNumber(this.getSession(url, sessions), revision);
+    }
+
+    /**
+     * @return the authors cached by a previous run over the same repository 
+     * and range, or <code>null</code>
+     */
+    private AuthorCache loadCache(File cacheFile, String uuid, long start, long end) {
+        final AuthorCache cache = AuthorCache.load(cacheFile);
+        if(cache == null) {
+            return null;
+        }
+        if(!cache.matches(CACHE_UUID, uuid)) {
+            LOGGER.info("Repository UUID of ["+this.readOnlyUrl+"] changed, ignoring SVN authorship cache ["+cacheFile.getAbsolutePath()+"]");
+            return null;
+        }
+        if(!cache.matches(CACHE_URL, this.readOnlyUrl) || !cache.matches(CACHE_PATH, this.svnOptions.getPath()) 
+                || !cache.matches(CACHE_START, Long.toString(start))) {
+            LOGGER.fine("Ignoring SVN authorship cache ["+cacheFile.getAbsolutePath()+"] created with different settings");
+            return null;
+        }
+        final long last;
+        try {
+            last = Long.parseLong(cache.getMetadata(CACHE_LAST));
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+        return last >= start && last <= end ? cache : null;
+    }
+
+    /**
+     * Stores the authors found along with the last revision read.
+     */
+    private void storeCache(File cacheFile, String uuid, long start, long last, Set<String> authorIds) {
+        final AuthorCache cache = new AuthorCache();
+        cache.setMetadata(CACHE_UUID, uuid);
+        cache.setMetadata(CACHE_URL, this.readOnlyUrl);
+        cache.setMetadata(CACHE_PATH, this.svnOptions.getPath());
+        cache.setMetadata(CACHE_START, Long.toString(start));
+        cache.setMetadata(CACHE_LAST, Long.toString(last));
+        for(String authorId : authorIds) {
+            final Author author = new Author();
+            author.setId(authorId);
+            cache.getAuthors().add(author);
+        }
+        try {
+            cache.store(cacheFile);
+        } catch (AuthorshipException ae) {
+            LOGGER.warning(ae.getMessage());
+        }
+    }
+
+    /**
+     * @return the SHA-1 of the SVN url, in hexadecimal
+     */
+    static String getCacheKey(String url) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            final StringBuilder key = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AuthorshipException("SHA-1 is not available", nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AuthorshipException("UTF-8 is not available", uee);
+        }
+    }
+
+    /**
+     * @return the log client of the full log mode
+     */
+    private SVNLogClient getLogClient() {
+        if(this.logClient == null) {
+            boolean readonly = true;
+            ISVNOptions options = SVNWCUtil.createDefaultOptions(readonly);
+            this.logClient = new SVNLogClient(this.sessionPool.getAuthenticationManager(), options);
+        }
+        return this.logClient;
+    }
+
+    /**
+     * @return the number of a revision, resolving dates and keywords such as 
+     * HEAD against the repository
+     */
+    static long getRevisionNumber(SVNRepository repository, SVNRevision revision) throws SVNException {
+        if(revision == null) {
+            return repository.getLatestRevision();
+        }
+        if(SVNRevision.isValidRevisionNumber(revision.getNumber())) {
+            return revision.getNumber();
+        }
+        if(revision.getDate() != null) {
+            return repository.getDatedRevision(revision.getDate());
+        }
+        return repository.getLatestRevision();
     }
 
 }
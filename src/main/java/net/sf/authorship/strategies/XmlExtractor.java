@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.strategies;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.authorship.model.Author;
+
+/**
+ * Extracts the authors of XML descriptors, from <i>&lt;author&gt;</i> 
+ * elements and from <i>@author</i> tags in comments. XML files have no 
+ * header, so they are always read whole.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class XmlExtractor extends LineExtractor {
+
+    private static final Pattern AUTHOR_ELEMENT_REGEX = Pattern.compile("<author>([^<]+)</author>");
+    
+    private static final Pattern AUTHOR_TAG_REGEX = Pattern.compile("@author\\s+(.*?)\\s*(?:-->|$)");
+    
+    private static final byte[] AUTHOR = ascii("author");
+    
+    /* (non-Javadoc)
+     * @see net.sf.authorship.strategies.LineExtractor#newLineHandler(java.nio.charset.Charset, boolean, java.util.List)
+     */
+    @Override
+    protected LineHandler newLineHandler(final Charset charset, boolean fullScan, final List<Author> authors) {
+        return new LineHandler() {
+            public boolean line(byte[] bytes, int start, int end) {
+                if(indexOf(bytes, start, end, AUTHOR) >= 0) {
+                    final String line = new String(bytes, start, end - start, charset);
+                    final Matcher element = AUTHOR_ELEMENT_REGEX.matcher(line);
+                    while(element.find()) {
+                        addAuthor(unescape(element.group(1)), authors);
+                    }
+                    final Matcher tag = AUTHOR_TAG_REGEX.matcher(line);
+                    if(tag.find()) {
+                        addAuthor(tag.group(1), authors);
+                    }
+                }
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * @return the text with the predefined XML entities replaced
+     */
+    private static String unescape(String text) {
+        if(text.indexOf('&') < 0) {
+            return text;
+        }
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+    
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import net.sf.authorship.model.Author;
+
+/**
+ * A set of authors persisted to a properties file, along with metadata 
+ * describing how they were found (e.g. the last analysed revision). Used by 
+ * strategies to resume from a previous run.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class AuthorCache {
+
+    private static final Logger LOGGER = Logger.getLogger(AuthorCache.class.getCanonicalName());
+
+    private static final String METADATA_PREFIX = "meta.";
+    private static final String AUTHOR_PREFIX = "author.";
+    private static final String AUTHOR_COUNT = "authors";
+
+    private final Properties metadata = new Properties();
+    private final Set<Author> authors = new LinkedHashSet<Author>();
+
+    /**
+     * Default constructor.
+     */
+    public AuthorCache() {
+        super();
+    }
+
+    /**
+     * @param key metadata key
+     * @return the metadata value, or <code>null</code>
+     */
+    public String getMetadata(String key) {
+        return metadata.getProperty(key);
+    }
+
+    /**
+     * @param key metadata key
+     * @param value metadata value, removed if <code>null</code>
+     */
+    public void setMetadata(String key, String value) {
+        if(value == null) {
+            metadata.remove(key);
+        } else {
+            metadata.setProperty(key, value);
+        }
+    }
+
+    /**
+     * @param key metadata key
+     * @param value expected value, may be <code>null</code>
+     * @return whether the metadata value is equal to the given value
+     */
+    public boolean matches(String key, String value) {
+        final String cached = this.getMetadata(key);
+        return cached == null ? value == null : cached.equals(value);
+    }
+
+    /**
+     * @return the authors, in the order they were added
+     */
+    public Set<Author> getAuthors() {
+        return authors;
+    }
+
+    /**
+     * Loads a cache file.
+     * 
+     * @param file cache file
+     * @return the cache, or <code>null</code> if the file does not exist or 
+     * could not be read
+     */
+    public static AuthorCache load(File file) {
+        if(file == null || !file.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            properties.load(input);
+        } catch (IOException ioe) {
+            LOGGER.warning("Failed to read authorship cache ["+file.getAbsolutePath()+"]: " + ioe.getMessage());
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+        final AuthorCache cache = new AuthorCache();
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith(METADATA_PREFIX)) {
+                cache.setMetadata(key.substring(METADATA_PREFIX.length()), properties.getProperty(key));
+            }
+        }
+        final int count;
+        try {
+            count = Integer.parseInt(properties.getProperty(AUTHOR_COUNT, "0"));
+        } catch (NumberFormatException nfe) {
+            LOGGER.warning("Corrupted authorship cache ["+file.getAbsolutePath()+"]");
+            return null;
+        }
+        for(int i = 0 ; i < count ; ++i) {
+            final String prefix = AUTHOR_PREFIX + i + ".";
+            final Author author = new Author(
+                    properties.getProperty(prefix + "id"), 
+                    properties.getProperty(prefix + "name"), 
+                    properties.getProperty(prefix + "email"), 
+                    properties.getProperty(prefix + "url"));
+            cache.getAuthors().add(author);
+        }
+        return cache;
+    }
+
+    /**
+     * Stores the cache. The file is written to a temporary file first and then 
+     * renamed, so that readers never see a partially written cache.
+     * 
+     * @param file cache file
+     */
+    public void store(File file) throws AuthorshipException {
+        final Properties properties = new Properties();
+        for(String key : metadata.stringPropertyNames()) {
+            properties.setProperty(METADATA_PREFIX + key, metadata.getProperty(key));
+        }
+        properties.setProperty(AUTHOR_COUNT, Integer.toString(authors.size()));
+        int i = 0;
+        for(Author author : authors) {
+            final String prefix = AUTHOR_PREFIX + i + ".";
+            setIfNotNull(properties, prefix + "id", author.getId());
+            setIfNotNull(properties, prefix + "name", author.getName());
+            setIfNotNull(properties, prefix + "email", author.getEmail());
+            setIfNotNull(properties, prefix + "url", author.getUrl());
+            ++i;
+        }
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new AuthorshipException("Couldn't create authorship cache directory ["+parent.getAbsolutePath()+"]");
+        }
+        final File temp = new File(parent, file.getName() + "." + System.nanoTime() + ".tmp");
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            properties.store(output, "Authorship cache");
+        } catch (IOException ioe) {
+            closeQuietly(output);
+            output = null;
+            temp.delete();
+            throw new AuthorshipException("Failed to write authorship cache ["+file.getAbsolutePath()+"]", ioe);
+        } finally {
+            closeQuietly(output);
+        }
+        if(!temp.renameTo(file)) {
+            // some platforms do not replace existing files when renaming
+            file.delete();
+            if(!temp.renameTo(file)) {
+                temp.delete();
+                throw new AuthorshipException("Failed to write authorship cache ["+file.getAbsolutePath()+"]");
+            }
+        }
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if(value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                LOGGER.warning(ioe.getMessage());
+            }
+        }
+    }
+
+}
@@ -23,7 +23,8 @@
  */
 package net.sf.authorship.util;
 
-import java.util.regex.Matcher;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import net.sf.authorship.model.Author;
@@ -35,139 +36,189 @@ import org.apache.commons.validator.routines.UrlValidator;
 /**
  * Utility methods for retrieving authors from text tokens.
  * 
+ * <p>Tag values are parsed in a single pass, and the same values, which 
+ * repeat across the sources of a project, are parsed only once. E-mail and 
+ * url validations are cached too.</p>
+ * 
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 0.1
  */
 public final class AuthorUtil {
 
+    private static final int MEMO_SIZE = 4096;
+    
+    private static final Memo<String, Author> AUTHORS = new Memo<String, Author>(MEMO_SIZE);
+    private static final Memo<String, Boolean> EMAILS = new Memo<String, Boolean>(MEMO_SIZE);
+    private static final Memo<String, Boolean> URLS = new Memo<String, Boolean>(MEMO_SIZE);
+    
+    private static final Pattern POM_EMAIL_AT = Pattern.compile("(?i)\\s+AT|_AT_"); // (?i) is for case insensitive
+    private static final Pattern POM_EMAIL_DOT = Pattern.compile("(?i)\\s+DOT|_DOT_");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
     private AuthorUtil() {
         super();
     }
 
+    /**
+     * Parses the value of an <i>@author</i> tag. The recognized forms are:
+     * 
+     * <ul>
+     * <li><i>e-mail</i></li>
+     * <li><i>name &lt;e-mail or url&gt;</i></li>
+     * <li><i>name (e-mail or url)</i></li>
+     * <li><i>name - e-mail or url</i></li>
+     * <li><i>name</i></li>
+     * </ul>
+     * 
+     * <p>A value ending with <i>&gt;</i> or <i>)</i> is read in the bracket 
+     * form, even if it has dashes, so that <i>Jane Doe &lt;jane-doe@x.org&gt;</i> 
+     * is not split at the dash. A trailing dash in the name of a bracket 
+     * form is dropped. The dash form applies only when the text after a dash 
+     * is an e-mail or an url, so that names such as <i>Jean-Luc Picard</i> 
+     * are kept whole; the first such dash is used. Otherwise the whole value 
+     * is the name.</p>
+     * 
+     * @param value tag value
+     * @return the author, or <code>null</code> if the value is 
+     * <code>null</code>. A new instance is returned on each call.
+     */
     public static final Author getAuthorFromAuthorJavadocAnnotation(String value) {
-        value = StringUtils.trim(value);
-        Author author = null;
-        for (Production production : PRODUCTIONS) {
-            author = production.produce(value);
-            if (author != null) {
-                break;
-            }
+        if(value == null) {
+            return null;
         }
-        return author;
-    }
-
-    private static boolean isEmail(String input) {
-        return EmailValidator.getInstance().isValid(input);
+        Author author = AUTHORS.get(value);
+        if(author == null) {
+            author = parse(value.trim());
+            AUTHORS.put(value, author);
+        }
+        return new Author(author.getId(), author.getName(), author.getEmail(), author.getUrl());
     }
     
-    private static boolean isUrl(String input) {
-        return UrlValidator.getInstance().isValid(input);
+    /**
+     * Reads the e-mail of a pom.xml developer, which may be obfuscated, e.g. 
+     * <i>jane AT example DOT org</i> or <i>jane_AT_example_DOT_org</i>.
+     * 
+     * @param email raw e-mail from pom.xml
+     * @return the e-mail if valid, otherwise the e-mail with the obfuscation 
+     * and whitespaces removed
+     */
+    public static String getPomEmail(String email) {
+        if(email == null || isEmail(email)) {
+            return email;
+        }
+        email = POM_EMAIL_AT.matcher(email).replaceAll("@");
+        email = POM_EMAIL_DOT.matcher(email).replaceAll(".");
+        return WHITESPACE.matcher(email).replaceAll("");
     }
     
-    // e-mail
-    private static final Production EmailOnly = new Production() {
-        public Author produce(String input) {
-            Author author = null;
-            if (EmailValidator.getInstance().isValid(input)) {
-                author = new Author(null, null, input, null);
-            }
-            return author;
+    /**
+     * @param input text
+     * @return whether the text is a valid e-mail
+     */
+    public static boolean isEmail(String input) {
+        if(input == null) {
+            return false;
         }
-    };
-
-    private final static Pattern NAME_EMAIL1 = Pattern.compile("(.*)\\s?-\\s?(.*)");
-    
-    // name - e-mail or url
-    private final static Production NameEmail1 = new Production() {
-        public Author produce(String input) {
-            Author author = null;
-            Matcher matcher = NAME_EMAIL1.matcher(input);
-            if(matcher.matches()) {
-                author = new Author();
-                author.setName(StringUtils.trim(matcher.group(1)));
-                final String tokenValue = StringUtils.trim(matcher.group(2));
-                if(isEmail(tokenValue)) {
-                    author.setEmail(tokenValue);
-                } else if(isUrl(tokenValue)) {
-                    author.setUrl(tokenValue);
-                }
-            }
-            return author;
+        Boolean valid = EMAILS.get(input);
+        if(valid == null) {
+            valid = Boolean.valueOf(EmailValidator.getInstance().isValid(input));
+            EMAILS.put(input, valid);
         }
-    };
+        return valid.booleanValue();
+    }
     
-    private final static Pattern NAME_EMAIL2 = Pattern.compile("(.*)\\s?\\(\\s?(.*)\\s?\\)\\s?");
+    /**
+     * @param input text
+     * @return whether the text is a valid url
+     */
+    public static boolean isUrl(String input) {
+        if(input == null) {
+            return false;
+        }
+        Boolean valid = URLS.get(input);
+        if(valid == null) {
+            valid = Boolean.valueOf(UrlValidator.getInstance().isValid(input));
+            URLS.put(input, valid);
+        }
+        return valid.booleanValue();
+    }
     
-    // name (e-mail or url)
-    private final static Production NameEmail2 = new Production() {
-        public Author produce(String input) {
-            Author author = null;
-            Matcher matcher = NAME_EMAIL2.matcher(input);
-            if(matcher.matches()) {
-                author = new Author();
-                author.setName(StringUtils.trim(matcher.group(1)));
-                final String tokenValue = StringUtils.trim(matcher.group(2));
-                if(isEmail(tokenValue)) {
-                    author.setEmail(tokenValue);
-                } else if(isUrl(tokenValue)) {
-                    author.setUrl(tokenValue);
-                }
+    /**
+     * @param value trimmed tag value
+     */
+    private static Author parse(String value) {
+        // one pass for the positions of the separators
+        int open = -1;
+        int dash = -1;
+        final char last = value.length() > 0 ? value.charAt(value.length() - 1) : 0;
+        final char opening = last == '>' ? '<' : last == ')' ? '(' : 0;
+        boolean at = false;
+        for(int i = 0 ; i < value.length() ; ++i) {
+            final char c = value.charAt(i);
+            if(c == opening) {
+                open = i;
+            } else if(c == '-' && dash < 0) {
+                dash = i;
+            } else if(c == '@') {
+                at = true;
             }
-            return author;
         }
-    };
-    
-    private final static Pattern NAME_EMAIL3 = Pattern.compile("(.*)\\s?\\<\\s?(.*)\\s?\\>\\s?");
-    
-    // name <e-mail or url>
-    private final static Production NameEmail3 = new Production() {
-        public Author produce(String input) {
-            Author author = null;
-            Matcher matcher = NAME_EMAIL3.matcher(input);
-            if(matcher.matches()) {
-                author = new Author();
-                author.setName(StringUtils.trim(matcher.group(1)));
-                final String tokenValue = StringUtils.trim(matcher.group(2));
-                if(isEmail(tokenValue)) {
-                    author.setEmail(tokenValue);
-                } else if(isUrl(tokenValue)) {
-                    author.setUrl(tokenValue);
-                }
+        // e-mail
+        if(at && opening == 0 && isEmail(value)) {
+            return new Author(null, null, value, null);
+        }
+        // name <e-mail or url>, name (e-mail or url)
+        if(open >= 0) {
+            final String name = StringUtils.stripEnd(value.substring(0, open).trim(), "- \t").trim();
+            return withToken(name, value.substring(open + 1, value.length() - 1).trim());
+        }
+        // name - e-mail or url
+        for( ; dash >= 0 ; dash = value.indexOf('-', dash + 1)) {
+            final String token = value.substring(dash + 1).trim();
+            if(isEmail(token) || isUrl(token)) {
+                return withToken(value.substring(0, dash).trim(), token);
             }
-            return author;
         }
-    };
+        // name
+        return new Author(null, value, null, null);
+    }
     
-    // name
-    private final static Production Name = new Production() {
-        public Author produce(String input) {
-            Author author = new Author(null, input, null, null);
-            return author;
+    private static Author withToken(String name, String token) {
+        final Author author = new Author();
+        author.setName(name);
+        if(isEmail(token)) {
+            author.setEmail(token);
+        } else if(isUrl(token)) {
+            author.setUrl(token);
         }
-    };
-
-    private static final Production[] PRODUCTIONS = new Production[] {
-        EmailOnly, NameEmail1, NameEmail2, NameEmail3
-        ,Name // this must be the last
-    };
-}
-
-/**
- * A production that produces authors if the given input matches with its
- * programmed implementation.
- * 
- * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
- * @since 0.1
- */
-interface Production {
-
+        return author;
+    }
+    
     /**
-     * Produces an Author from an input if matches the implementation of this
-     * production.
-     * 
-     * @param input
-     *            Author javadoc annotation value.
-     * @return an Author if it matches its production implementation.
+     * A bounded map dropping the least recently used entries, safe for 
+     * concurrent use.
      */
-    Author produce(String input);
+    private static final class Memo<K, V> {
+        
+        private final Map<K, V> entries;
+        
+        Memo(final int size) {
+            this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > size;
+                }
+            };
+        }
+        
+        synchronized V get(K key) {
+            return this.entries.get(key);
+        }
+        
+        synchronized void put(K key, V value) {
+            this.entries.put(key, value);
+        }
+    }
+    
 }
@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Lock over a cache entry, shared by threads of this JVM and by other 
+ * processes (e.g. concurrent builds on the same CI agent). Exclusive locks 
+ * are used to modify or delete an entry, and shared locks to use it.
+ * 
+ * <p>A file lock alone is not enough, as the JVM does not allow two threads 
+ * to hold a lock on the same file, so threads are serialized first by an 
+ * in-memory lock and then the process acquires the file lock. Shared file 
+ * locks are held once per process, while any thread holds a shared lock.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public final class CacheLock {
+
+    private static final ConcurrentMap<String, State> STATES = new ConcurrentHashMap<String, State>();
+
+    private final State state;
+    private final boolean shared;
+    private final RandomAccessFile file;
+    private final FileLock fileLock;
+
+    private CacheLock(State state, boolean shared, RandomAccessFile file, FileLock fileLock) {
+        super();
+        this.state = state;
+        this.shared = shared;
+        this.file = file;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Blocks until the lock file is exclusively held by the current thread.
+     * 
+     * @param lockFile lock file, created if it does not exist
+     * @return the acquired lock, that must be released by the caller
+     */
+    public static CacheLock acquire(File lockFile) throws AuthorshipException {
+        final State state = getState(lockFile);
+        state.lock.writeLock().lock();
+        RandomAccessFile file = null;
+        try {
+            file = open(lockFile);
+            return new CacheLock(state, false, file, file.getChannel().lock());
+        } catch (IOException ioe) {
+            closeQuietly(file);
+            state.lock.writeLock().unlock();
+            throw new AuthorshipException("Failed to lock ["+lockFile.getAbsolutePath()+"]", ioe);
+        } catch (RuntimeException re) {
+            closeQuietly(file);
+            state.lock.writeLock().unlock();
+            throw re;
+        }
+    }
+
+    /**
+     * Acquires the exclusive lock only if it is not held by anyone else.
+     * 
+     * @param lockFile lock file, created if it does not exist
+     * @return the acquired lock, or <code>null</code> if it is held
+     */
+    public static CacheLock tryAcquire(File lockFile) throws AuthorshipException {
+        final State state = getState(lockFile);
+        if(!state.lock.writeLock().tryLock()) {
+            return null;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = open(lockFile);
+            final FileLock fileLock = file.getChannel().tryLock();
+            if(fileLock == null) {
+                closeQuietly(file);
+                state.lock.writeLock().unlock();
+                return null;
+            }
+            return new CacheLock(state, false, file, fileLock);
+        } catch (IOException ioe) {
+            closeQuietly(file);
+            state.lock.writeLock().unlock();
+            throw new AuthorshipException("Failed to lock ["+lockFile.getAbsolutePath()+"]", ioe);
+        } catch (RuntimeException re) {
+            closeQuietly(file);
+            state.lock.writeLock().unlock();
+            throw re;
+        }
+    }
+
+    /**
+     * Blocks until the lock file is held in shared mode.
+     * 
+     * @param lockFile lock file, created if it does not exist
+     * @return the acquired lock, that must be released by the caller
+     */
+    public static CacheLock acquireShared(File lockFile) throws AuthorshipException {
+        final State state = getState(lockFile);
+        state.lock.readLock().lock();
+        try {
+            synchronized (state) {
+                if(state.readers == 0) {
+                    RandomAccessFile file = null;
+                    try {
+                        file = open(lockFile);
+                        state.sharedLock = file.getChannel().lock(0L, Long.MAX_VALUE, true);
+                        state.sharedFile = file;
+                    } catch (IOException ioe) {
+                        closeQuietly(file);
+                        throw new AuthorshipException("Failed to lock ["+lockFile.getAbsolutePath()+"]", ioe);
+                    }
+                }
+                ++state.readers;
+            }
+            return new CacheLock(state, true, null, null);
+        } catch (RuntimeException re) {
+            state.lock.readLock().unlock();
+            throw re;
+        }
+    }
+
+    /**
+     * Releases the file lock and the thread lock.
+     */
+    public void release() {
+        if(shared) {
+            try {
+                synchronized (state) {
+                    if(--state.readers == 0) {
+                        releaseQuietly(state.sharedLock);
+                        closeQuietly(state.sharedFile);
+                        state.sharedLock = null;
+                        state.sharedFile = null;
+                    }
+                }
+            } finally {
+                state.lock.readLock().unlock();
+            }
+        } else {
+            try {
+                releaseQuietly(fileLock);
+                closeQuietly(file);
+            } finally {
+                state.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static State getState(File lockFile) throws AuthorshipException {
+        final String key;
+        try {
+            key = lockFile.getCanonicalPath();
+        } catch (IOException ioe) {
+            throw new AuthorshipException("Invalid lock file ["+lockFile+"]", ioe);
+        }
+        State state = STATES.get(key);
+        if(state == null) {
+            final State newState = new State();
+            state = STATES.putIfAbsent(key, newState);
+            if(state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    private static RandomAccessFile open(File lockFile) throws IOException {
+        final File parent = lockFile.getParentFile();
+        if(parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Couldn't create directory ["+parent.getAbsolutePath()+"]");
+        }
+        return new RandomAccessFile(lockFile, "rw");
+    }
+
+    private static void releaseQuietly(FileLock fileLock) {
+        if(fileLock != null) {
+            try {
+                fileLock.release();
+            } catch (IOException ioe) {
+                // the lock is released anyway when the channel is closed
+            }
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if(file != null) {
+            try {
+                file.close();
+            } catch (IOException ioe) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Lock state of a lock file in this JVM.
+     */
+    private static final class State {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int readers;
+        private RandomAccessFile sharedFile;
+        private FileLock sharedLock;
+    }
+
+}
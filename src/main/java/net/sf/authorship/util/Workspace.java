@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2012> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.sf.authorship.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Scratch space of the strategies, such as temporary clones and mirrors. 
+ * Each entry is a directory of the workspace, guarded by a {@link CacheLock} 
+ * held in shared mode while it is used. Entries are deleted recursively, and 
+ * {@link #evict()} keeps the workspace under its size budget by deleting the 
+ * least recently used entries that are not in use.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 0.1
+ */
+public class Workspace {
+
+    private static final Logger LOGGER = Logger.getLogger(Workspace.class.getCanonicalName());
+
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+    private static final String TEMPORARY_PREFIX = "tmp-";
+
+    private final File directory;
+    private final long maxBytes;
+
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicInteger deletedEntries = new AtomicInteger();
+    private final AtomicInteger evictedEntries = new AtomicInteger();
+
+    /**
+     * @param directory base directory of the entries
+     * @param maxBytes size budget in bytes, <code>0</code> for no limit
+     */
+    public Workspace(File directory, long maxBytes) {
+        super();
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the base directory of the entries
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return size budget in bytes, <code>0</code> for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return bytes freed by deleted and evicted entries
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    /**
+     * @return number of temporary entries deleted after being used
+     */
+    public int getDeletedEntries() {
+        return deletedEntries.get();
+    }
+
+    /**
+     * @return number of entries removed by {@link #evict()}
+     */
+    public int getEvictedEntries() {
+        return evictedEntries.get();
+    }
+
+    /**
+     * Opens a persistent entry, kept between builds until it is evicted. The 
+     * entry directory is not created, and it is marked as recently used.
+     * 
+     * @param name entry name
+     * @return the entry, that must be released by the caller
+     */
+    public Entry open(String name) throws AuthorshipException {
+        final CacheLock lock = CacheLock.acquireShared(this.getLockFile(name));
+        final File entryDirectory = new File(this.directory, name);
+        if(entryDirectory.isDirectory() && !entryDirectory.setLastModified(System.currentTimeMillis())) {
+            LOGGER.fine("Failed to update the last modified time of ["+entryDirectory.getAbsolutePath()+"]");
+        }
+        return new Entry(entryDirectory, lock, false);
+    }
+
+    /**
+     * Creates an empty temporary entry, deleted by {@link Entry#delete()}. If 
+     * the build dies before that, it is deleted by the next eviction.
+     * 
+     * @param prefix prefix of the entry name
+     * @return the entry, that must be deleted by the caller
+     */
+    public Entry createTemporary(String prefix) throws AuthorshipException {
+        final String name = TEMPORARY_PREFIX + prefix + "-" + Long.toString(System.nanoTime());
+        final CacheLock lock = CacheLock.acquireShared(this.getLockFile(name));
+        final File entryDirectory = new File(this.directory, name);
+        if(!entryDirectory.mkdirs()) {
+            lock.release();
+            this.getLockFile(name).delete();
+            throw new AuthorshipException("Failed to create workspace directory ["+entryDirectory.getAbsolutePath()+"]");
+        }
+        return new Entry(entryDirectory, lock, true);
+    }
+
+    /**
+     * Deletes the temporary entries left by previous builds, then the least 
+     * recently used entries until the workspace fits in its size budget. 
+     * Entries in use are skipped.
+     * 
+     * @return bytes reclaimed
+     */
+    public long evict() throws AuthorshipException {
+        final File[] files = this.directory.listFiles();
+        if(files == null) {
+            return 0L;
+        }
+        final List<Candidate> candidates = new ArrayList<Candidate>();
+        long size = 0L;
+        long reclaimed = 0L;
+        for(File file : files) {
+            if(!file.isDirectory()) {
+                continue;
+            }
+            final File lockFile = this.getLockFile(file.getName());
+            final CacheLock lock = CacheLock.tryAcquire(lockFile);
+            if(lock == null) {
+                if(this.maxBytes > 0L) {
+                    size += sizeOf(file);
+                }
+                continue;
+            }
+            if(file.getName().startsWith(TEMPORARY_PREFIX)) {
+                try {
+                    LOGGER.fine("Deleting stale workspace entry ["+file.getAbsolutePath()+"]");
+                    reclaimed += delete(file);
+                    this.evictedEntries.incrementAndGet();
+                } finally {
+                    lock.release();
+                    lockFile.delete();
+                }
+                continue;
+            }
+            lock.release();
+            if(this.maxBytes > 0L) {
+                // sizing large entries is only worth it with a budget
+                final Candidate candidate = new Candidate(file, sizeOf(file));
+                size += candidate.size;
+                candidates.add(candidate);
+            }
+        }
+        if(this.maxBytes > 0L && size > this.maxBytes) {
+            Collections.sort(candidates, new Comparator<Candidate>() {
+                public int compare(Candidate o1, Candidate o2) {
+                    return o1.lastModified < o2.lastModified ? -1 : (o1.lastModified == o2.lastModified ? 0 : 1);
+                }
+            });
+            for(Candidate candidate : candidates) {
+                if(size <= this.maxBytes) {
+                    break;
+                }
+                final CacheLock lock = CacheLock.tryAcquire(this.getLockFile(candidate.file.getName()));
+                if(lock == null) {
+                    continue;
+                }
+                try {
+                    LOGGER.info("Evicting workspace entry ["+candidate.file.getAbsolutePath()+"] ("+candidate.size+" bytes)");
+                    final long deleted = delete(candidate.file);
+                    size -= deleted;
+                    reclaimed += deleted;
+                    this.evictedEntries.incrementAndGet();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+        this.reclaimedBytes.addAndGet(reclaimed);
+        return reclaimed;
+    }
+
+    private File getLockFile(String name) {
+        return new File(this.directory, name + LOCK_FILE_SUFFIX);
+    }
+
+    /**
+     * @param file file or directory
+     * @return total size of the file, or of the files in the directory, 
+     * without following symbolic links
+     */
+    public static long sizeOf(File file) {
+        if(file.isDirectory() && !FileUtils.isSymlink(file)) {
+            long size = 0L;
+            final File[] children = file.listFiles();
+            if(children != null) {
+                for(File child : children) {
+                    size += sizeOf(child);
+                }
+            }
+            return size;
+        }
+        return file.length();
+    }
+
+    /**
+     * Deletes a file, or a directory and its contents, without following 
+     * symbolic links. Files that cannot be deleted are logged and skipped.
+     * 
+     * @param file file or directory
+     * @return bytes deleted
+     */
+    public static long delete(File file) {
+        long bytes = 0L;
+        if(file.isDirectory() && !FileUtils.isSymlink(file)) {
+            final File[] children = file.listFiles();
+            if(children != null) {
+                for(File child : children) {
+                    bytes += delete(child);
+                }
+            }
+        } else {
+            bytes = file.length();
+        }
+        // read only files (e.g. git packs) cannot be deleted on Windows
+        if(!file.delete() && !(file.setWritable(true) && file.delete()) && file.exists()) {
+            LOGGER.warning("Failed to delete ["+file.getAbsolutePath()+"]");
+            return 0L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Directory of the workspace in use.
+     */
+    public final class Entry {
+
+        private final File entryDirectory;
+        private final boolean temporary;
+        private CacheLock lock;
+
+        private Entry(File entryDirectory, CacheLock lock, boolean temporary) {
+            super();
+            this.entryDirectory = entryDirectory;
+            this.lock = lock;
+            this.temporary = temporary;
+        }
+
+        /**
+         * @return the entry directory
+         */
+        public File getDirectory() {
+            return entryDirectory;
+        }
+
+        /**
+         * Releases the entry, so that it can be evicted. Temporary entries are 
+         * deleted.
+         */
+        public void release() {
+            if(this.temporary) {
+                this.delete();
+            } else if(this.lock != null) {
+                this.lock.release();
+                this.lock = null;
+            }
+        }
+
+        /**
+         * Deletes the entry directory and releases the entry.
+         */
+        public void delete() {
+            if(this.lock == null) {
+                return;
+            }
+            try {
+                reclaimedBytes.addAndGet(Workspace.delete(this.entryDirectory));
+                deletedEntries.incrementAndGet();
+            } finally {
+                this.lock.release();
+                this.lock = null;
+                if(this.temporary) {
+                    getLockFile(this.entryDirectory.getName()).delete();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Entry that may be evicted.
+     */
+    private static final class Candidate {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        private Candidate(File file, long size) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = file.lastModified();
+        }
+    }
+
+}